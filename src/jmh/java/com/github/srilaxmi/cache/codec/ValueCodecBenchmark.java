@@ -0,0 +1,73 @@
+package com.github.srilaxmi.cache.codec;
+
+import com.github.srilaxmi.cache.configuration.CodecProperties;
+import com.github.srilaxmi.cache.configuration.CompressionProperties;
+import com.github.srilaxmi.cache.metrics.CacheMetrics;
+import com.github.srilaxmi.cache.support.Payload;
+import com.google.common.reflect.TypeToken;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of a List<Document> value in every supported format, with and without compression. JSON is
+ * the Gson path that ReactiveRedisCache has always used. The stored size of the value is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValueCodecBenchmark {
+
+    private static final Type DOCUMENT_LIST_TYPE = new TypeToken<List<Document>>() {
+    }.getType();
+
+    @Param({"JSON", "SMILE", "CBOR"})
+    private ValueFormat format;
+
+    @Param({"NONE", "LZ4", "ZSTD"})
+    private CompressionAlgorithm compression;
+
+    @Param({"SMALL_DOCUMENT", "LIST_20", "LIST_2000"})
+    private Payload payload;
+
+    private ValueCodecRegistry registry;
+
+    private String set;
+
+    private List<Document> value;
+
+    private byte[] stored;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CodecProperties codecProperties = new CodecProperties();
+        set = format.name();
+        codecProperties.getSets().put(set, format);
+        CompressionProperties compressionProperties = new CompressionProperties();
+        compressionProperties.getDefaults().setAlgorithm(compression);
+        compressionProperties.getDefaults().setThreshold(0);
+        registry = new ValueCodecRegistry(codecProperties, compressionProperties,
+                                          new CacheMetrics(new SimpleMeterRegistry()));
+
+        value = payload.documents();
+        stored = registry.encode(set, value);
+        System.out.printf("%n%s/%s :: %s :: %d bytes per entry%n", format, compression, payload, stored.length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return registry.encode(set, value);
+    }
+
+    @Benchmark
+    public List<Document> decode() {
+        return registry.decode(set, stored, DOCUMENT_LIST_TYPE);
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.srilaxmi.cache.service;
+
+import com.github.srilaxmi.cache.backend.RedisCacheBackend;
+import com.github.srilaxmi.cache.codec.ValueCodecRegistry;
+import com.github.srilaxmi.cache.configuration.CodecProperties;
+import com.github.srilaxmi.cache.configuration.CompressionProperties;
+import com.github.srilaxmi.cache.configuration.HotKeyProperties;
+import com.github.srilaxmi.cache.configuration.LocalCacheProperties;
+import com.github.srilaxmi.cache.constants.EntityCacheName;
+import com.github.srilaxmi.cache.metrics.CacheMetrics;
+import com.github.srilaxmi.cache.metrics.HotKeyTracker;
+import com.github.srilaxmi.cache.support.Payload;
+import com.github.srilaxmi.cache.util.JsonUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+import org.redisson.api.RLocalCachedMap;
+import org.springframework.cache.Cache;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a local hit and of a put in LocalCache, with and without the decoded tier, against the JsonUtil based
+ * decode that LocalCache.get used before (readTree followed by convertValue).
+ *
+ * The RLocalCachedMap is replaced by an in-memory stand-in, so only the work done by LocalCache itself is measured.
+ * Run with {@code -prof gc} to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalCacheBenchmark {
+
+    private static final String KEY = "policy-1";
+
+    @Param({"false", "true"})
+    private boolean decodedTier;
+
+    @Param({"SMALL_DOCUMENT", "LIST_20", "LIST_2000"})
+    private Payload payload;
+
+    private Document document;
+
+    private LocalCache localCache;
+
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CacheMetrics cacheMetrics = new CacheMetrics(new SimpleMeterRegistry());
+        ValueCodecRegistry codecRegistry = new ValueCodecRegistry(
+                new CodecProperties(), new CompressionProperties(), cacheMetrics);
+        LocalCacheProperties.Settings settings = new LocalCacheProperties.Settings();
+        settings.setDecodedTier(decodedTier);
+
+        localCache = new LocalCache(EntityCacheName.TEST_CACHE, stubMap(new HashMap<>()), codecRegistry, settings,
+                                    cacheMetrics, new HotKeyTracker(new HotKeyProperties()),
+                                    Runnable::run, null, null);
+        document = payload.document();
+        localCache.put(KEY, document);
+        json = JsonUtil.toJsonString(document);
+    }
+
+    @Benchmark
+    public Cache.ValueWrapper localCacheGet() {
+        return localCache.get(KEY);
+    }
+
+    @Benchmark
+    public void localCachePut() {
+        localCache.put(KEY, document);
+    }
+
+    @Benchmark
+    public Object jsonUtilDecode() {
+        return JsonUtil.fromJsonString(json, Document.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    static RLocalCachedMap<Object, Object> stubMap(Map<Object, Object> backing) {
+        return (RLocalCachedMap<Object, Object>) Proxy.newProxyInstance(
+                RLocalCachedMap.class.getClassLoader(),
+                new Class<?>[]{RLocalCachedMap.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "get":
+                            return backing.get(args[0]);
+                        case "getCachedMap":
+                            return backing;
+                        case "getCodec":
+                            return RedisCacheBackend.VALUE_CODEC;
+                        case "fastPut":
+                            return backing.put(args[0], args[1]) == null;
+                        case "fastRemove":
+                            return backing.remove(args[0]) == null ? 0L : 1L;
+                        case "addListener":
+                            return 0;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
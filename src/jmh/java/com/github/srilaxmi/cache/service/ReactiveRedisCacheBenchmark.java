@@ -0,0 +1,129 @@
+package com.github.srilaxmi.cache.service;
+
+import com.github.srilaxmi.cache.backend.CommandRouter;
+import com.github.srilaxmi.cache.backend.OffHeapCacheBackend;
+import com.github.srilaxmi.cache.backend.RedisCacheBackend;
+import com.github.srilaxmi.cache.backend.ShardRouter;
+import com.github.srilaxmi.cache.codec.ValueCodecRegistry;
+import com.github.srilaxmi.cache.configuration.BackendProperties;
+import com.github.srilaxmi.cache.configuration.CodecProperties;
+import com.github.srilaxmi.cache.configuration.CompressionProperties;
+import com.github.srilaxmi.cache.configuration.ExpiryProperties;
+import com.github.srilaxmi.cache.configuration.HotKeyProperties;
+import com.github.srilaxmi.cache.configuration.ListProperties;
+import com.github.srilaxmi.cache.configuration.MongoStoreProperties;
+import com.github.srilaxmi.cache.configuration.NearCacheProperties;
+import com.github.srilaxmi.cache.configuration.ReadRoutingProperties;
+import com.github.srilaxmi.cache.configuration.RedissonCustomClient;
+import com.github.srilaxmi.cache.configuration.ShardingProperties;
+import com.github.srilaxmi.cache.metrics.CacheMetrics;
+import com.github.srilaxmi.cache.metrics.HotKeyTracker;
+import com.github.srilaxmi.cache.metrics.NodeLatencies;
+import com.github.srilaxmi.cache.metrics.RedisCommandMetrics;
+import com.github.srilaxmi.cache.support.InMemoryRedisServer;
+import com.github.srilaxmi.cache.support.Payload;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end cost of the ReactiveRedisCache read and write paths (encoding, redisson, network and decoding) against
+ * the in-memory redis stand-in, so it runs offline, and of the same paths over the off-heap backend. Run with {@code -PjmhThreads=N} to see how the paths scale;
+ * concurrent reads of the same key are coalesced, exactly as in production.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReactiveRedisCacheBenchmark {
+
+    private static final String SET = "benchmark";
+
+    private static final String DOCUMENT_KEY = "document";
+
+    private static final String LIST_KEY = "list";
+
+    @Param({"SMALL_DOCUMENT", "LIST_20", "LIST_2000"})
+    private Payload payload;
+
+    @Param({"redis", "off-heap"})
+    private String backend;
+
+    private InMemoryRedisServer server;
+
+    private AnnotationConfigApplicationContext context;
+
+    private ReactiveRedisCache reactiveRedisCache;
+
+    private Map<String, List<Document>> listEntry;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        server = InMemoryRedisServer.start();
+
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", Map.of(
+                "redis.uri", server.getUri(),
+                "redis.topology", "standalone",
+                "redis.ssl", "false",
+                "redis.password", "",
+                "cache.backend.type", backend
+        )));
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.register(
+                BenchmarkConfiguration.class,
+                CodecProperties.class, CompressionProperties.class, NearCacheProperties.class,
+                HotKeyProperties.class, ExpiryProperties.class, BackendProperties.class, MongoStoreProperties.class,
+                ListProperties.class, ShardingProperties.class, ReadRoutingProperties.class,
+                RedisCommandMetrics.class, CacheMetrics.class, HotKeyTracker.class, NodeLatencies.class,
+                RedissonCustomClient.class, ValueCodecRegistry.class, NearCache.class,
+                ShardRouter.class, CommandRouter.class, RedisCacheBackend.class, OffHeapCacheBackend.class,
+                MongoStore.class, ReactiveRedisCache.class
+        );
+        context.refresh();
+        reactiveRedisCache = context.getBean(ReactiveRedisCache.class);
+
+        listEntry = Map.of(LIST_KEY, payload.documents());
+        reactiveRedisCache.put(SET, DOCUMENT_KEY, payload.document()).block();
+        reactiveRedisCache.putFromList(SET, listEntry).block();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        server.close();
+    }
+
+    @Benchmark
+    public Object get() {
+        return reactiveRedisCache.get(SET, DOCUMENT_KEY, Object.class).block();
+    }
+
+    @Benchmark
+    public List<Document> getToList() {
+        return reactiveRedisCache.getToList(SET, LIST_KEY).block();
+    }
+
+    @Benchmark
+    public Boolean putFromList() {
+        return reactiveRedisCache.putFromList(SET, listEntry).block();
+    }
+
+    @Configuration
+    @EnableConfigurationProperties
+    static class BenchmarkConfiguration {
+    }
+}
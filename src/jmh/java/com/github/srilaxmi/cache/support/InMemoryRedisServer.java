@@ -0,0 +1,290 @@
+package com.github.srilaxmi.cache.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process redis stand-in speaking RESP2 on a loopback port, so that benchmarks going through redisson run offline
+ * and without a redis install.
+ *
+ * Only the connection handshake and the hash commands issued by ReactiveRedisCache are implemented; everything is
+ * kept in memory and every connection is served by its own thread. Socket, protocol and client costs are real, the
+ * server side is close to free, so results show what the cache itself costs rather than what redis does.
+ */
+public class InMemoryRedisServer implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryRedisServer.class);
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final ServerSocket serverSocket;
+
+    private final ExecutorService threads = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "in-memory-redis");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Hash fields are kept as ISO-8859-1 strings, which map every byte to one char and back
+    private final Map<String, Map<String, byte[]>> hashes = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    private InMemoryRedisServer(ServerSocket serverSocket) {
+        this.serverSocket = serverSocket;
+    }
+
+    public static InMemoryRedisServer start() throws IOException {
+
+        InMemoryRedisServer server = new InMemoryRedisServer(new ServerSocket(0, 128, InetAddress.getLoopbackAddress()));
+        server.threads.execute(server::accept);
+        return server;
+    }
+
+    public String getUri() {
+        return "redis://127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        threads.shutdownNow();
+    }
+
+    private void accept() {
+
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                threads.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!closed) {
+                    log.error("Failed to accept in-memory redis connection", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+
+        try (Socket connection = socket) {
+            InputStream in = new BufferedInputStream(connection.getInputStream(), 64 * 1024);
+            OutputStream out = new BufferedOutputStream(connection.getOutputStream(), 64 * 1024);
+            while (!closed) {
+                List<byte[]> command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                boolean quit = execute(command, out);
+                // Pipelined commands are answered in one write
+                if (quit || in.available() == 0) {
+                    out.flush();
+                }
+                if (quit) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        }
+    }
+
+    private boolean execute(List<byte[]> command, OutputStream out) throws IOException {
+
+        String name = new String(command.get(0), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT);
+        switch (name) {
+            case "PING":
+                writeSimple(out, "PONG");
+                return false;
+            case "QUIT":
+                writeSimple(out, "OK");
+                return true;
+            case "SELECT":
+            case "AUTH":
+            case "CLIENT":
+            case "READONLY":
+                writeSimple(out, "OK");
+                return false;
+            case "HSET": {
+                Map<String, byte[]> hash = hashes.computeIfAbsent(key(command, 1), ignored -> new ConcurrentHashMap<>());
+                long created = 0;
+                for (int i = 2; i + 1 < command.size(); i += 2) {
+                    if (hash.put(key(command, i), command.get(i + 1)) == null) {
+                        created++;
+                    }
+                }
+                writeInteger(out, created);
+                return false;
+            }
+            case "HGET":
+                writeBulk(out, hash(command).get(key(command, 2)));
+                return false;
+            case "HMGET": {
+                Map<String, byte[]> hash = hash(command);
+                writeArrayHeader(out, command.size() - 2);
+                for (int i = 2; i < command.size(); i++) {
+                    writeBulk(out, hash.get(key(command, i)));
+                }
+                return false;
+            }
+            case "HEXISTS":
+                writeInteger(out, hash(command).containsKey(key(command, 2)) ? 1 : 0);
+                return false;
+            case "HDEL": {
+                Map<String, byte[]> hash = hash(command);
+                long removed = 0;
+                for (int i = 2; i < command.size(); i++) {
+                    if (hash.remove(key(command, i)) != null) {
+                        removed++;
+                    }
+                }
+                writeInteger(out, removed);
+                return false;
+            }
+            case "HLEN":
+                writeInteger(out, hash(command).size());
+                return false;
+            case "DEL":
+            case "EXISTS": {
+                long found = 0;
+                for (int i = 1; i < command.size(); i++) {
+                    String key = key(command, i);
+                    if (name.equals("DEL") ? hashes.remove(key) != null : hashes.containsKey(key)) {
+                        found++;
+                    }
+                }
+                writeInteger(out, found);
+                return false;
+            }
+            default:
+                writeError(out, "ERR unknown command '" + name + "'");
+                return false;
+        }
+    }
+
+    private Map<String, byte[]> hash(List<byte[]> command) {
+        return hashes.getOrDefault(key(command, 1), Map.of());
+    }
+
+    private static String key(List<byte[]> command, int index) {
+        return new String(command.get(index), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Reads one command sent as a RESP array of bulk strings, or returns null at the end of the stream.
+     */
+    private static List<byte[]> readCommand(InputStream in) throws IOException {
+
+        int type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        if (type != '*') {
+            throw new IOException("Expected a RESP array, got '" + (char) type + "'");
+        }
+        int count = (int) readNumber(in);
+        List<byte[]> command = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Expected a RESP bulk string");
+            }
+            byte[] argument = new byte[(int) readNumber(in)];
+            readFully(in, argument);
+            // Trailing CRLF
+            in.read();
+            in.read();
+            command.add(argument);
+        }
+        return command;
+    }
+
+    private static long readNumber(InputStream in) throws IOException {
+
+        long value = 0;
+        boolean negative = false;
+        int next;
+        while ((next = in.read()) != '\r') {
+            if (next == -1) {
+                throw new EOFException();
+            }
+            if (next == '-') {
+                negative = true;
+            } else {
+                value = value * 10 + (next - '0');
+            }
+        }
+        in.read();
+        return negative ? -value : value;
+    }
+
+    private static void readFully(InputStream in, byte[] buffer) throws IOException {
+
+        int read = 0;
+        while (read < buffer.length) {
+            int count = in.read(buffer, read, buffer.length - read);
+            if (count == -1) {
+                throw new EOFException();
+            }
+            read += count;
+        }
+    }
+
+    private static void writeSimple(OutputStream out, String value) throws IOException {
+        out.write('+');
+        out.write(value.getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+    }
+
+    private static void writeError(OutputStream out, String message) throws IOException {
+        out.write('-');
+        out.write(message.getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+    }
+
+    private static void writeInteger(OutputStream out, long value) throws IOException {
+        out.write(':');
+        out.write(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+    }
+
+    private static void writeArrayHeader(OutputStream out, int size) throws IOException {
+        out.write('*');
+        out.write(Integer.toString(size).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+    }
+
+    private static void writeBulk(OutputStream out, byte[] value) throws IOException {
+
+        if (value == null) {
+            out.write("$-1".getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+            return;
+        }
+        out.write('$');
+        out.write(Integer.toString(value.length).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+        out.write(value);
+        out.write(CRLF);
+    }
+}
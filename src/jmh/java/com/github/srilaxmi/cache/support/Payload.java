@@ -0,0 +1,48 @@
+package com.github.srilaxmi.cache.support;
+
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Value shapes shared by the benchmarks, from a single small Document up to a large List<Document>. The documents
+ * mimic the policy records cached in production: a few scalars, a short array and one nested document.
+ */
+public enum Payload {
+
+    SMALL_DOCUMENT(1),
+    LIST_20(20),
+    LIST_2000(2000);
+
+    private final int documents;
+
+    Payload(int documents) {
+        this.documents = documents;
+    }
+
+    public List<Document> documents() {
+
+        List<Document> value = new ArrayList<>(documents);
+        for (int i = 0; i < documents; i++) {
+            value.add(new Document("_id", "policy-" + i)
+                              .append("customerName", "Customer " + i)
+                              .append("premium", 12500.75 + i)
+                              .append("active", i % 2 == 0)
+                              .append("tags", List.of("motor", "renewal", "online"))
+                              .append("address", new Document("city", "Bengaluru")
+                                      .append("pincode", 560001 + i)
+                                      .append("line1", "Street " + i)));
+        }
+        return value;
+    }
+
+    /**
+     * The payload as a single Document, with lists nested under "items", for caches holding one Document per key.
+     */
+    public Document document() {
+
+        List<Document> value = documents();
+        return documents == 1 ? value.get(0) : new Document("items", value);
+    }
+}
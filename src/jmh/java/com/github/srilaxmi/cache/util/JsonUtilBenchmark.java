@@ -0,0 +1,47 @@
+package com.github.srilaxmi.cache.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.github.srilaxmi.cache.support.Payload;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the JsonUtil conversions used around the caches, per payload shape.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonUtilBenchmark {
+
+    private static final TypeReference<List<Document>> DOCUMENT_LIST = new TypeReference<List<Document>>() {
+    };
+
+    @Param({"SMALL_DOCUMENT", "LIST_20", "LIST_2000"})
+    private Payload payload;
+
+    private List<Document> value;
+
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        value = payload.documents();
+        json = JsonUtil.toJsonString(value);
+    }
+
+    @Benchmark
+    public String toJsonString() {
+        return JsonUtil.toJsonString(value);
+    }
+
+    @Benchmark
+    public List<Document> fromJsonString() {
+        return JsonUtil.fromJsonString(json, DOCUMENT_LIST);
+    }
+}
@@ -0,0 +1,266 @@
+package com.github.srilaxmi.cache.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.srilaxmi.cache.CacheMateApplication;
+import com.github.srilaxmi.cache.support.InMemoryRedisServer;
+import com.github.srilaxmi.cache.support.Payload;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.bson.Document;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End to end load test of the CacheController API: starts the application on a random port (against the in-memory
+ * redis stand-in unless {@code loadtest.redis-uri} is given), preloads the keys and runs a mixed workload of single
+ * reads, writes and list reads with Zipf distributed keys through the whole WebFlux stack, auth filter included.
+ *
+ * Every setting is a system property ({@code ./gradlew loadTest -Ploadtest.concurrency=128}); {@code cache.*} and
+ * {@code redis.*} properties are passed to the application, so codecs, near cache or pool sizes can be compared run
+ * by run. The report gives throughput and p50/p99/p999 latency per operation and the allocation rate of the process,
+ * printed and written as JSON to {@code loadtest.output}.
+ *
+ * The generator is closed-loop (every worker waits for its response before sending the next request), so latencies
+ * are those seen under the achieved throughput, not under a fixed arrival rate. The allocation rate covers the whole
+ * JVM, i.e. the load generator as well.
+ */
+public class LoadTest {
+
+    private static final String SET = "loadtest";
+
+    private final Duration warmup = Duration.parse(property("warmup", "PT10S"));
+    private final Duration duration = Duration.parse(property("duration", "PT60S"));
+    private final int concurrency = Integer.parseInt(property("concurrency", "64"));
+    private final int keys = Integer.parseInt(property("keys", "10000"));
+    private final double zipfExponent = Double.parseDouble(property("zipf-exponent", "0.99"));
+    private final int readPercent = Integer.parseInt(property("read-percent", "80"));
+    private final int writePercent = Integer.parseInt(property("write-percent", "15"));
+    private final Payload documentPayload = Payload.valueOf(property("document-payload", "SMALL_DOCUMENT"));
+    private final Payload listPayload = Payload.valueOf(property("list-payload", "LIST_20"));
+    private final String redisUri = property("redis-uri", "");
+    private final String output = property("output", "build/results/loadtest/results.json");
+
+    private final Map<String, Recorder> recorders = new LinkedHashMap<>();
+    private final Map<String, LongAdder> errors = new LinkedHashMap<>();
+
+    private volatile boolean measuring;
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run();
+        System.exit(0);
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty("loadtest." + name, defaultValue);
+    }
+
+    private void run() throws Exception {
+
+        for (String operation : List.of("read", "write", "list")) {
+            recorders.put(operation, new Recorder(3));
+            errors.put(operation, new LongAdder());
+        }
+
+        try (InMemoryRedisServer server = redisUri.isEmpty() ? InMemoryRedisServer.start() : null) {
+            String uri = server != null ? server.getUri() : redisUri;
+            ConfigurableApplicationContext application = new SpringApplicationBuilder(CacheMateApplication.class)
+                    .properties("server.port=0", "redis.uri=" + uri)
+                    .run();
+            try {
+                int port = application.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+                WebClient client = WebClient.builder()
+                        .baseUrl("http://127.0.0.1:" + port + "/api/v1/cache-mate/" + SET)
+                        .defaultHeader("x-user-id", "loadtest")
+                        .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(64 * 1024 * 1024))
+                        .build();
+                preload(client);
+                Map<String, Object> report = measure(client);
+                write(report);
+            } finally {
+                application.close();
+            }
+        }
+    }
+
+    private void preload(WebClient client) {
+
+        System.out.printf("Preloading %d keys :: %s documents, %s lists%n", keys, documentPayload, listPayload);
+        Document document = documentPayload.document();
+        List<Document> list = listPayload.documents();
+        Flux.range(0, keys)
+                .flatMap(i -> Mono.when(write(client, i, document), writeList(client, i, list)), concurrency)
+                .blockLast();
+    }
+
+    private Map<String, Object> measure(WebClient client) {
+
+        ZipfianKeys keyChooser = new ZipfianKeys(keys, zipfExponent);
+        Document document = documentPayload.document();
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        System.out.printf("Running :: %d workers :: warmup %s :: measured %s%n", concurrency, warmup, duration);
+
+        Mono<Void> startMeasuring = Mono.delay(warmup)
+                .doOnNext(ignored -> {
+                    recorders.values().forEach(Recorder::reset);
+                    errors.values().forEach(LongAdder::reset);
+                    measuring = true;
+                })
+                .then();
+        long[] allocatedBefore = new long[1];
+        startMeasuring = startMeasuring.doOnSuccess(ignored -> allocatedBefore[0] = allocatedBytes());
+
+        Flux<Void> workers = Flux.range(0, concurrency)
+                .flatMap(worker -> Mono.defer(() -> request(client, keyChooser, document))
+                                 .repeat(() -> System.nanoTime() < end)
+                                 .then(),
+                         concurrency);
+        Mono.when(startMeasuring, workers).block();
+        measuring = false;
+        long elapsed = System.nanoTime() - measureFrom;
+        long allocated = allocatedBytes() - allocatedBefore[0];
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("concurrency", concurrency);
+        settings.put("keys", keys);
+        settings.put("zipfExponent", zipfExponent);
+        settings.put("readPercent", readPercent);
+        settings.put("writePercent", writePercent);
+        settings.put("listPercent", 100 - readPercent - writePercent);
+        settings.put("documentPayload", documentPayload);
+        settings.put("listPayload", listPayload);
+        settings.put("redis", redisUri.isEmpty() ? "in-memory stand-in" : redisUri);
+        settings.put("durationSeconds", duration.getSeconds());
+        report.put("settings", settings);
+
+        Histogram total = new Histogram(3);
+        Map<String, Object> operations = new LinkedHashMap<>();
+        long totalErrors = 0;
+        for (Map.Entry<String, Recorder> entry : recorders.entrySet()) {
+            Histogram histogram = entry.getValue().getIntervalHistogram();
+            total.add(histogram);
+            long operationErrors = errors.get(entry.getKey()).sum();
+            totalErrors += operationErrors;
+            operations.put(entry.getKey(), summary(histogram, operationErrors, elapsed));
+        }
+        operations.put("total", summary(total, totalErrors, elapsed));
+        report.put("operations", operations);
+        report.put("allocationMegabytesPerSecond", allocated / 1024.0 / 1024.0 / (elapsed / 1e9));
+        return report;
+    }
+
+    private Mono<?> request(WebClient client, ZipfianKeys keyChooser, Document document) {
+
+        int key = keyChooser.next();
+        int dice = ThreadLocalRandom.current().nextInt(100);
+        String operation;
+        Mono<?> call;
+        if (dice < readPercent) {
+            operation = "read";
+            call = client.get().uri("/data/{key}", "key-" + key).retrieve().bodyToMono(byte[].class);
+        } else if (dice < readPercent + writePercent) {
+            operation = "write";
+            call = write(client, key, document);
+        } else {
+            operation = "list";
+            call = client.get().uri("/list-data/{key}", "list-" + key).retrieve().bodyToMono(byte[].class);
+        }
+
+        long start = System.nanoTime();
+        return call
+                .doOnSuccess(ignored -> record(operation, start))
+                .onErrorResume(e -> {
+                    if (measuring) {
+                        errors.get(operation).increment();
+                    }
+                    return Mono.empty();
+                })
+                .then(Mono.just(operation));
+    }
+
+    private void record(String operation, long start) {
+
+        if (measuring) {
+            recorders.get(operation).recordValue((System.nanoTime() - start) / 1000);
+        }
+    }
+
+    private Mono<byte[]> write(WebClient client, int key, Document document) {
+
+        return client.post()
+                .uri("/data/{key}", "key-" + key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(document)
+                .retrieve()
+                .bodyToMono(byte[].class);
+    }
+
+    private Mono<byte[]> writeList(WebClient client, int key, List<Document> list) {
+
+        return client.post()
+                .uri("/list-data/{key}", "list-" + key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(list), new ParameterizedTypeReference<List<Document>>() {
+                })
+                .retrieve()
+                .bodyToMono(byte[].class);
+    }
+
+    private static Map<String, Object> summary(Histogram histogram, long errors, long elapsedNanos) {
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", histogram.getTotalCount());
+        summary.put("errors", errors);
+        summary.put("throughputPerSecond", histogram.getTotalCount() / (elapsedNanos / 1e9));
+        summary.put("p50Micros", histogram.getValueAtPercentile(50));
+        summary.put("p99Micros", histogram.getValueAtPercentile(99));
+        summary.put("p999Micros", histogram.getValueAtPercentile(99.9));
+        summary.put("maxMicros", histogram.getMaxValue());
+        return summary;
+    }
+
+    /**
+     * Bytes allocated so far by the live threads of the JVM.
+     */
+    private static long allocatedBytes() {
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+        long[] allocated = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threads.getAllThreadIds());
+        return Arrays.stream(allocated).filter(bytes -> bytes > 0).sum();
+    }
+
+    private void write(Map<String, Object> report) throws Exception {
+
+        ObjectMapper mapper = new ObjectMapper();
+        String json = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(report);
+        System.out.println(json);
+        File file = new File(output);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        mapper.writerWithDefaultPrettyPrinter().writeValue(file, report);
+        System.out.printf("Report written to %s%n", file.getAbsolutePath());
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.srilaxmi.cache.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks key indexes following a Zipf distribution: index 0 is the most popular, index i is requested about
+ * 1 / (i + 1)^exponent as often. An exponent around 1 matches the skew usually seen in front of caches.
+ */
+public class ZipfianKeys {
+
+    private final double[] cumulative;
+
+    public ZipfianKeys(int keys, double exponent) {
+
+        cumulative = new double[keys];
+        double sum = 0;
+        for (int i = 0; i < keys; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < keys; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    public int next() {
+
+        int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+        int key = index >= 0 ? index : -index - 1;
+        return Math.min(key, cumulative.length - 1);
+    }
+}
@@ -1,11 +1,12 @@
 package com.github.srilaxmi.cache;
 
 
+import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 @SpringBootApplication
 public class CacheMateApplication {
     public static void main(String[] args) {
-        System.out.println("Hello world!");
+        SpringApplication.run(CacheMateApplication.class, args);
     }
-}
\ No newline at end of file
+}
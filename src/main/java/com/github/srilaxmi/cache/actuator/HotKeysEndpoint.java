@@ -0,0 +1,37 @@
+package com.github.srilaxmi.cache.actuator;
+
+import com.github.srilaxmi.cache.configuration.HotKeyProperties;
+import com.github.srilaxmi.cache.metrics.HotKeyTracker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Actuator endpoint ({@code /actuator/hotkeys}) reporting the hottest and the biggest keys seen by the caches and the
+ * distribution of value sizes per cache, to decide which keys to pin in the near cache and which values to split.
+ */
+@Component
+@Endpoint(id = "hotkeys")
+public class HotKeysEndpoint {
+
+    @Autowired
+    private HotKeyTracker hotKeyTracker;
+
+    @Autowired
+    private HotKeyProperties hotKeyProperties;
+
+    @ReadOperation
+    public Map<String, Object> hotKeys() {
+
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("settings", hotKeyProperties);
+        details.put("hotKeys", hotKeyTracker.getHotKeys());
+        details.put("bigKeys", hotKeyTracker.getBigKeys());
+        details.put("sizeHistograms", hotKeyTracker.getSizeHistograms());
+        return details;
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.srilaxmi.cache.actuator;
+
+import com.github.srilaxmi.cache.service.LocalCache;
+import com.github.srilaxmi.cache.service.LocalCacheManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Actuator endpoint ({@code /actuator/localcaches}) listing the local caches created so far, with the settings they
+ * were created with and how they are doing, so that every cache can be sized against its real working set.
+ */
+@Component
+@Endpoint(id = "localcaches")
+public class LocalCachesEndpoint {
+
+    @Autowired
+    private LocalCacheManager localCacheManager;
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> localCaches() {
+
+        Map<String, Map<String, Object>> caches = new TreeMap<>();
+        localCacheManager.getCaches().forEach(cache -> caches.put(cache.getName(), describe(cache)));
+        return caches;
+    }
+
+    @ReadOperation
+    public Map<String, Object> localCache(@Selector String name) {
+
+        return localCacheManager.getCaches()
+                .stream()
+                .filter(cache -> cache.getName().equals(name))
+                .findFirst()
+                .map(this::describe)
+                .orElse(null);
+    }
+
+    private Map<String, Object> describe(LocalCache cache) {
+
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("settings", cache.getSettings());
+        details.put("localEntries", cache.getCachedKeySet().size());
+        if (cache.getOffHeapTierSize() >= 0) {
+            details.put("offHeapEntries", cache.getOffHeapTierSize());
+        }
+        if (cache.getSnapshotSize() >= 0) {
+            details.put("snapshotEntries", cache.getSnapshotSize());
+        }
+        details.put("hits", cache.getCacheHits());
+        details.put("misses", cache.getCacheMisses());
+        return details;
+    }
+}
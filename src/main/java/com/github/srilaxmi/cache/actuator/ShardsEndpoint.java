@@ -0,0 +1,109 @@
+package com.github.srilaxmi.cache.actuator;
+
+import com.github.srilaxmi.cache.backend.ShardRouter;
+import com.github.srilaxmi.cache.configuration.ShardingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Actuator endpoint ({@code /actuator/shards}) listing the shard layout of every sharded set, and resharding a set
+ * with a POST of {@code {"shards": <count>}} to {@code /actuator/shards/<set>}. Resharding runs in the background;
+ * its progress shows in the layout and the moved keys.
+ *
+ * A resharding request is checked against the current layout before it is started: it is answered with 400 for a set
+ * which is not sharded or a count below one, and with 409 while the set is being resharded to another count.
+ */
+@Slf4j
+@Component
+@Endpoint(id = "shards")
+@ConditionalOnProperty(prefix = "cache.backend", name = "type", havingValue = "redis", matchIfMissing = true)
+public class ShardsEndpoint {
+
+    private static final int STATUS_CONFLICT = 409;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardingProperties shardingProperties;
+
+    @ReadOperation
+    public Mono<Map<String, Map<String, Object>>> shards() {
+
+        return Flux.fromIterable(shardingProperties.getSets().keySet())
+                .concatMap(set -> describe(set).map(details -> Map.entry(set, details)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue, TreeMap::new);
+    }
+
+    @ReadOperation
+    public Mono<Map<String, Object>> shard(@Selector String set) {
+
+        return shardingProperties.isSharded(set) ? describe(set) : Mono.empty();
+    }
+
+    @WriteOperation
+    public Mono<WebEndpointResponse<Map<String, Object>>> reshard(@Selector String set, int shards) {
+
+        if (!shardingProperties.isSharded(set)) {
+            return Mono.just(rejected(set, shards, "Set " + set + " is not listed under cache.sharding.sets",
+                                      WebEndpointResponse.STATUS_BAD_REQUEST));
+        }
+        if (shards < 1) {
+            return Mono.just(rejected(set, shards, "A set needs at least one shard", WebEndpointResponse.STATUS_BAD_REQUEST));
+        }
+        return shardRouter.loadLayout(set).map(current -> {
+            if (current.isMigrating() && current.getCount() != shards) {
+                return rejected(set, shards, "Set " + set + " is being resharded to " + current.getCount() + " shards",
+                                STATUS_CONFLICT);
+            }
+            shardRouter.reshard(set, shards)
+                    .subscribe(layout -> log.info("Resharding finished :: {} :: {}", set, layout),
+                               e -> log.error("Resharding failed :: {} :: to {} shards", set, shards, e));
+            return new WebEndpointResponse<>(details(set, shards, "started"), WebEndpointResponse.STATUS_OK);
+        });
+    }
+
+    private static WebEndpointResponse<Map<String, Object>> rejected(String set, int shards, String error, int status) {
+
+        log.warn("Resharding rejected :: {} :: to {} shards :: {}", set, shards, error);
+        Map<String, Object> details = details(set, shards, "rejected");
+        details.put("error", error);
+        return new WebEndpointResponse<>(details, status);
+    }
+
+    private static Map<String, Object> details(String set, int shards, String status) {
+
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("set", set);
+        details.put("shards", shards);
+        details.put("status", status);
+        return details;
+    }
+
+    private Mono<Map<String, Object>> describe(String set) {
+
+        return shardRouter.getLayout(set).map(layout -> {
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("configuredShards", shardingProperties.getSettings(set).getShards());
+            details.put("shards", layout.getCount());
+            if (layout.isMigrating()) {
+                details.put("previousShards", layout.getPreviousCount());
+            }
+            details.put("movedKeys", shardRouter.getMovedKeys(set));
+            return details;
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.srilaxmi.cache.backend;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Storage of the sets served by ReactiveRedisCache. A set is a map of string keys to the stored bytes framed by the
+ * ValueCodecRegistry; encoding, the near cache, read coalescing and metrics stay in ReactiveRedisCache, so a backend
+ * only moves bytes.
+ *
+ * The backend in use is chosen with {@code cache.backend.type}, see BackendProperties.
+ */
+public interface CacheBackend {
+
+    Mono<byte[]> get(String set, String key);
+
+    /**
+     * Values of the given keys, keys which are not present are left out.
+     */
+    Mono<Map<String, byte[]>> getAll(String set, Set<String> keys);
+
+    /**
+     * Writes one value and tells whether the key was created rather than updated. expiry is null for sets that do
+     * not expire.
+     */
+    Mono<Boolean> put(String set, String key, byte[] value, Expiry expiry);
+
+    /**
+     * Writes one value unless the key is already present, and tells whether it was written.
+     */
+    Mono<Boolean> putIfAbsent(String set, String key, byte[] value, Expiry expiry);
+
+    /**
+     * Writes many values at once and tells, per entry and in entry order, whether the key was created.
+     */
+    Mono<List<Boolean>> putAll(String set, List<Map.Entry<String, byte[]>> entries, Expiry expiry);
+
+    /**
+     * Removes many keys at once and tells, per key and in key order, whether the key existed.
+     */
+    Mono<List<Boolean>> removeAll(String set, List<String> keys);
+
+    /**
+     * Removes the given keys and returns the number of keys which existed.
+     */
+    Mono<Long> remove(String set, Collection<String> keys);
+
+    Mono<Integer> size(String set);
+
+    /**
+     * Whether entries of expiring sets can expire after a max idle time, rather than only after their ttl.
+     */
+    default boolean supportsMaxIdle() {
+        return true;
+    }
+
+    /**
+     * Walks all entries of a set whose key matches the glob-style pattern (all of them when null), fetching about
+     * count entries at a time as they are requested downstream. Entries written or removed during the scan may or may
+     * not be returned.
+     */
+    Flux<Map.Entry<String, byte[]>> scan(String set, String pattern, int count);
+
+    /**
+     * Deletes the set together with its native lists.
+     */
+    Mono<Boolean> deleteSet(String set);
+
+    /*
+     * Native lists, see ListProperties. A native list belongs to a set but is stored apart from its values, one
+     * element per list item, and is absent when it has no elements.
+     */
+
+    /**
+     * Replaces the native list of a key with the given elements in one atomic step. ttlMillis is 0 for lists which do
+     * not expire.
+     */
+    Mono<Void> replaceList(String set, String key, List<byte[]> elements, long ttlMillis);
+
+    /**
+     * Appends elements to the native list of a key, creating it if needed, and returns its new length.
+     */
+    Mono<Long> appendToList(String set, String key, List<byte[]> elements);
+
+    /**
+     * Elements from index from (inclusive) to index to (exclusive) of the native list of a key; fewer, or none, when
+     * the list is shorter.
+     */
+    Mono<List<byte[]>> getListRange(String set, String key, long from, long to);
+
+    /**
+     * Length of the native list of a key, 0 when it has none.
+     */
+    Mono<Long> getListLength(String set, String key);
+
+    /**
+     * Removes the native lists of the given keys and returns the number of lists which existed.
+     */
+    Mono<Long> removeLists(String set, Collection<String> keys);
+}
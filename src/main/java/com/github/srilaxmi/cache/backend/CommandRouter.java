@@ -0,0 +1,211 @@
+package com.github.srilaxmi.cache.backend;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.srilaxmi.cache.configuration.ReadRoutingProperties;
+import com.github.srilaxmi.cache.configuration.RedissonCustomClient;
+import com.github.srilaxmi.cache.constants.ReadPolicy;
+import com.github.srilaxmi.cache.metrics.LatencyEstimator;
+import com.github.srilaxmi.cache.metrics.RedisCommandMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.redisson.api.RedissonReactiveClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Sends the redis commands of RedisCacheBackend, applying the read routing, hedging and timeouts configured per set
+ * (see ReadRoutingProperties).
+ *
+ * The latency of every command is tracked per set and request size, and that estimate drives both the hedge delay and
+ * the timeout, so they follow the actual latency of the set instead of a fixed worst case. Sizes are bucketed by
+ * powers of four keys or elements, so that a large HMGET or LRANGE is not held to the latency of small ones. A read
+ * which lost its hedge race counts with the time it took until the hedge answered. Latencies are kept for the
+ * {@code max-tracked-sets} most recently read sets.
+ *
+ * Hedging and timeouts only cut waiting short: a cancelled command may still be executed by redis, so only reads are
+ * hedged or given the adaptive timeout. Writes (HSET, RPUSH, batches...) keep the response timeout and retries of the
+ * client, a write given up on early could still be applied and be applied again by a retry of the caller. Reads are
+ * only hedged when there are replicas to send the hedge to. Published as {@code cache.reads.hedged} and
+ * {@code cache.reads.hedge-wins} per set, and {@code cache.commands.timeouts} per set and command.
+ */
+@Component
+@ConditionalOnProperty(prefix = "cache.backend", name = "type", havingValue = "redis", matchIfMissing = true)
+public class CommandRouter {
+
+    @Autowired
+    private ReadRoutingProperties properties;
+
+    @Autowired
+    private RedissonCustomClient redissonCustomClient;
+
+    @Autowired
+    private RedisCommandMetrics redisCommandMetrics;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<ReadPolicy, RedissonReactiveClient> clients = new ConcurrentHashMap<>();
+
+    // Whether the topology has replicas, null until checked and re-checked once per latency window
+    private volatile Boolean replicas;
+
+    private volatile long replicasCheckedAt;
+
+    // Latency per set, and per command and size bucket
+    private Cache<String, Map<String, LatencyEstimator>> latencies;
+
+    @PostConstruct
+    public void init() {
+        latencies = Caffeine.newBuilder().maximumSize(properties.getMaxTrackedSets()).build();
+    }
+
+    /**
+     * The client serving the reads of a set; sharedClient, the client of the backend, for ANY.
+     */
+    public RedissonReactiveClient getReadClient(String set, RedissonReactiveClient sharedClient) {
+
+        return getClient(properties.getSettings(set).getPolicy(), sharedClient);
+    }
+
+    private RedissonReactiveClient getClient(ReadPolicy policy, RedissonReactiveClient sharedClient) {
+
+        if (policy == ReadPolicy.ANY) {
+            return sharedClient;
+        }
+        RedissonReactiveClient client = clients.get(policy);
+        if (client != null) {
+            return client;
+        }
+        return clients.computeIfAbsent(policy, ignored -> redissonCustomClient.getRedissonClient(policy).reactive());
+    }
+
+    /**
+     * Runs a read of a single key or element, see below.
+     */
+    public <T> Mono<T> read(
+            String set,
+            String command,
+            RedissonReactiveClient sharedClient,
+            Function<RedissonReactiveClient, Mono<T>> read
+    ) {
+
+        return read(set, command, 1, sharedClient, read);
+    }
+
+    /**
+     * Runs a read of size keys or elements on the client of the policy of the set, hedged on a replica once it has been
+     * waiting for the hedge quantile, and bounded by the adaptive timeout.
+     */
+    public <T> Mono<T> read(
+            String set,
+            String command,
+            int size,
+            RedissonReactiveClient sharedClient,
+            Function<RedissonReactiveClient, Mono<T>> read
+    ) {
+
+        return Mono.defer(() -> {
+            ReadRoutingProperties.Settings settings = properties.getSettings(set);
+            LatencyEstimator latency = getLatency(set, command, size);
+            Mono<T> primary = timed(latency, redisCommandMetrics.record(command, read.apply(getClient(settings.getPolicy(), sharedClient))));
+
+            ReadRoutingProperties.Hedge hedge = settings.getHedge();
+            long hedgeDelay = hedge.isEnabled() && hasReplicas() ? latency.quantile(hedge.getQuantile()) : -1;
+            if (hedgeDelay < 0) {
+                return withTimeout(set, command, settings, latency, primary);
+            }
+            Duration delay = max(Duration.ofNanos(hedgeDelay), hedge.getMinDelay());
+            Mono<T> hedged = Mono.delay(delay)
+                    .then(Mono.defer(() -> {
+                        meterRegistry.counter("cache.reads.hedged", "set", set).increment();
+                        return redisCommandMetrics.record(command, read.apply(getClient(ReadPolicy.REPLICA_PREFERRED, sharedClient)));
+                    }))
+                    .doOnNext(won -> meterRegistry.counter("cache.reads.hedge-wins", "set", set).increment());
+            return withTimeout(set, command, settings, latency, Mono.firstWithSignal(primary, hedged));
+        });
+    }
+
+    /**
+     * Runs a write on the response timeout of the client, see above.
+     */
+    public <T> Mono<T> write(String set, String command, Mono<T> write) {
+
+        return redisCommandMetrics.record(command, write);
+    }
+
+    /**
+     * Without replicas, in standalone topology or a cluster of masters only, a hedge would go to the same server as
+     * the read it hedges.
+     */
+    private boolean hasReplicas() {
+
+        long now = System.nanoTime();
+        Boolean known = replicas;
+        if (known == null || now - replicasCheckedAt > properties.getLatencyWindow().toNanos()) {
+            known = redissonCustomClient.hasReplicas();
+            replicasCheckedAt = now;
+            replicas = known;
+        }
+        return known;
+    }
+
+    /**
+     * The timeout of a command: its latency quantile times the multiplier, between min and max, or max while its
+     * latency is not known yet.
+     */
+    private <T> Mono<T> withTimeout(
+            String set,
+            String command,
+            ReadRoutingProperties.Settings settings,
+            LatencyEstimator latency,
+            Mono<T> call
+    ) {
+
+        ReadRoutingProperties.Timeout timeout = settings.getTimeout();
+        if (!timeout.isEnabled()) {
+            return call;
+        }
+        long quantile = latency.quantile(timeout.getQuantile());
+        Duration limit = quantile < 0 ? timeout.getMax()
+                : min(max(Duration.ofNanos((long) (quantile * timeout.getMultiplier())), timeout.getMin()), timeout.getMax());
+        return call.timeout(limit)
+                .doOnError(TimeoutException.class,
+                           e -> meterRegistry.counter("cache.commands.timeouts", "set", set, "command", command).increment());
+    }
+
+    private static <T> Mono<T> timed(LatencyEstimator latency, Mono<T> call) {
+
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call.doFinally(signal -> latency.record(System.nanoTime() - start));
+        });
+    }
+
+    private LatencyEstimator getLatency(String set, String command, int size) {
+
+        // Buckets of 1, 2 to 4, 5 to 16, 17 to 64... keys or elements
+        int bucket = size <= 1 ? 0 : (33 - Integer.numberOfLeadingZeros(size - 1)) / 2;
+        return latencies
+                .get(set, name -> new ConcurrentHashMap<>())
+                .computeIfAbsent(bucket == 0 ? command : command + ":" + bucket,
+                                 name -> new LatencyEstimator(properties.getLatencyWindow().toNanos(),
+                                                              properties.getMinSamples()));
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
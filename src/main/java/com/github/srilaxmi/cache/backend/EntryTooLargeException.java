@@ -0,0 +1,12 @@
+package com.github.srilaxmi.cache.backend;
+
+/**
+ * Thrown by an OffHeapStore for an entry which does not fit in one of its segments. Answered with 413 by the
+ * CustomExceptionHandler.
+ */
+public class EntryTooLargeException extends IllegalArgumentException {
+
+    public EntryTooLargeException(String message) {
+        super(message);
+    }
+}
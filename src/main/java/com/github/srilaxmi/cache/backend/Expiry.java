@@ -0,0 +1,26 @@
+package com.github.srilaxmi.cache.backend;
+
+import com.github.srilaxmi.cache.configuration.ExpiryProperties;
+import lombok.AllArgsConstructor;
+
+import java.time.Duration;
+
+/**
+ * Expiry of the entries of one write into an expiring set: the ttl and max idle time given with the write, falling
+ * back to the ones configured for the set. Every entry asks for its own ttl, so that the jitter differs per entry.
+ */
+@AllArgsConstructor
+public class Expiry {
+
+    private final ExpiryProperties.Settings settings;
+    private final Duration ttl;
+    private final Duration maxIdle;
+
+    public long nextTtlMillis() {
+        return settings.jitteredTtlMillis(ttl);
+    }
+
+    public long getMaxIdleMillis() {
+        return settings.maxIdleMillis(maxIdle);
+    }
+}
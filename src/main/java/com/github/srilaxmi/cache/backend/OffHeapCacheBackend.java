@@ -0,0 +1,431 @@
+package com.github.srilaxmi.cache.backend;
+
+import com.github.srilaxmi.cache.configuration.BackendProperties;
+import com.github.srilaxmi.cache.configuration.ExpiryProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Sets kept in this process, in direct memory outside the java heap, for single node deployments without redis.
+ * Every set is an OffHeapStore of {@code cache.backend.off-heap.max-bytes-per-set} bytes which evicts its oldest
+ * entries once full. Data is lost when the process stops and is not shared with other instances.
+ *
+ * Operations run on the calling thread and only hold the lock of one segment at a time. Entries of expiring sets
+ * expire after their ttl; max idle times are not supported, and are rejected at startup when configured and by the
+ * controller when asked for. An entry larger than a segment fails its write with an EntryTooLargeException.
+ *
+ * The native lists of a set are kept in a second store of the same size, created when the set gets its first list, so
+ * that they neither count towards the size of the set nor take memory from its values. A list is one entry per
+ * element, keyed {@code <key>\0<index>}, plus a header entry {@code <key>\0#} holding its length and expiry.
+ * Operations on the same list are serialised by a striped lock. Elements are evicted like any other entry; a list
+ * found with an evicted element is dropped as a whole when it is read.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "cache.backend", name = "type", havingValue = "off-heap")
+public class OffHeapCacheBackend implements CacheBackend {
+
+    @Autowired
+    private BackendProperties backendProperties;
+
+    @Autowired
+    private ExpiryProperties expiryProperties;
+
+    private final Map<String, OffHeapStore> stores = new ConcurrentHashMap<>();
+
+    // Native lists per set
+    private final Map<String, OffHeapStore> listStores = new ConcurrentHashMap<>();
+
+    private static final char LIST_SEPARATOR = '\0';
+
+    // length, expires at
+    private static final int LIST_HEADER_BYTES = 16;
+
+    private static final int LIST_LOCK_STRIPES = 64;
+
+    private final Object[] listLocks = new Object[LIST_LOCK_STRIPES];
+
+    {
+        for (int i = 0; i < listLocks.length; i++) {
+            listLocks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void validate() {
+
+        expiryProperties.getSets().forEach((set, settings) -> {
+            if (!settings.getMaxIdle().isZero() && !settings.getMaxIdle().isNegative()) {
+                throw new IllegalStateException("Set " + set + " has a max idle time under cache.expiry, which the"
+                                                        + " off-heap backend does not support");
+            }
+        });
+    }
+
+    @Override
+    public boolean supportsMaxIdle() {
+        return false;
+    }
+
+    private OffHeapStore getStore(String set) {
+        return getStore(stores, set, "store");
+    }
+
+    private OffHeapStore getListStore(String set) {
+        return getStore(listStores, set, "list store");
+    }
+
+    private OffHeapStore getStore(Map<String, OffHeapStore> stores, String set, String kind) {
+
+        OffHeapStore store = stores.get(set);
+        if (store != null) {
+            return store;
+        }
+        return stores.computeIfAbsent(set, name -> {
+            BackendProperties.OffHeap offHeap = backendProperties.getOffHeap();
+            OffHeapStore created = new OffHeapStore(offHeap.getMaxBytesPerSet(), offHeap.getSegments());
+            log.info("Created off-heap {} :: {} :: of {} bytes", kind, name, created.getCapacity());
+            return created;
+        });
+    }
+
+    private static long expiresAt(Expiry expiry, long now) {
+
+        if (expiry == null) {
+            return 0;
+        }
+        if (expiry.getMaxIdleMillis() > 0) {
+            throw new IllegalArgumentException("Max idle time is not supported by the off-heap backend");
+        }
+        long ttl = expiry.nextTtlMillis();
+        return ttl > 0 ? now + ttl : 0;
+    }
+
+    @Override
+    public Mono<byte[]> get(String set, String key) {
+
+        return Mono.fromCallable(() -> {
+            OffHeapStore store = stores.get(set);
+            return store == null ? null : store.get(key, System.currentTimeMillis());
+        });
+    }
+
+    @Override
+    public Mono<Map<String, byte[]>> getAll(String set, Set<String> keys) {
+
+        return Mono.fromCallable(() -> {
+            Map<String, byte[]> values = new HashMap<>();
+            OffHeapStore store = stores.get(set);
+            if (store == null) {
+                return values;
+            }
+            long now = System.currentTimeMillis();
+            for (String key : keys) {
+                byte[] value = store.get(key, now);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+            return values;
+        });
+    }
+
+    @Override
+    public Mono<Boolean> put(String set, String key, byte[] value, Expiry expiry) {
+
+        return Mono.fromCallable(() -> {
+            long now = System.currentTimeMillis();
+            return getStore(set).put(key, value, expiresAt(expiry, now), now);
+        });
+    }
+
+    @Override
+    public Mono<Boolean> putIfAbsent(String set, String key, byte[] value, Expiry expiry) {
+
+        return Mono.fromCallable(() -> {
+            long now = System.currentTimeMillis();
+            return getStore(set).putIfAbsent(key, value, expiresAt(expiry, now), now);
+        });
+    }
+
+    @Override
+    public Mono<List<Boolean>> putAll(String set, List<Map.Entry<String, byte[]>> entries, Expiry expiry) {
+
+        return Mono.fromCallable(() -> {
+            OffHeapStore store = getStore(set);
+            long now = System.currentTimeMillis();
+            List<Boolean> created = new ArrayList<>(entries.size());
+            for (Map.Entry<String, byte[]> entry : entries) {
+                created.add(store.put(entry.getKey(), entry.getValue(), expiresAt(expiry, now), now));
+            }
+            return created;
+        });
+    }
+
+    @Override
+    public Mono<List<Boolean>> removeAll(String set, List<String> keys) {
+
+        return Mono.fromCallable(() -> {
+            OffHeapStore store = stores.get(set);
+            long now = System.currentTimeMillis();
+            List<Boolean> existed = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                existed.add(store != null && store.remove(key, now));
+            }
+            return existed;
+        });
+    }
+
+    @Override
+    public Mono<Long> remove(String set, Collection<String> keys) {
+
+        return removeAll(set, new ArrayList<>(keys))
+                .map(existed -> existed.stream().filter(Boolean::booleanValue).count());
+    }
+
+    @Override
+    public Mono<Integer> size(String set) {
+
+        return Mono.fromCallable(() -> {
+            OffHeapStore store = stores.get(set);
+            return store == null ? 0 : store.size();
+        });
+    }
+
+    /**
+     * Walks the store one segment at a time, so that at most one segment worth of entries is copied out at once and
+     * writers only wait while their segment is copied. count does not apply.
+     */
+    @Override
+    public Flux<Map.Entry<String, byte[]>> scan(String set, String pattern, int count) {
+
+        return Flux.defer(() -> {
+            OffHeapStore store = stores.get(set);
+            if (store == null) {
+                return Flux.empty();
+            }
+            Pattern matcher = pattern == null ? null : toRegex(pattern);
+            return Flux.range(0, store.getSegmentCount())
+                    .concatMap(segment -> Flux.defer(() -> Flux.fromIterable(
+                            store.getEntries(segment, System.currentTimeMillis()))), 1)
+                    .filter(entry -> matcher == null || matcher.matcher(entry.getKey()).matches());
+        });
+    }
+
+    /**
+     * Translates a redis glob-style pattern ({@code *}, {@code ?}, {@code [...]} and {@code \} escapes) into a regex.
+     */
+    static Pattern toRegex(String glob) {
+
+        StringBuilder regex = new StringBuilder();
+        boolean inClass = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '\\' && i + 1 < glob.length()) {
+                appendLiteral(regex, glob.charAt(++i));
+            } else if (inClass) {
+                if (c == ']') {
+                    inClass = false;
+                    regex.append(']');
+                } else if (c == '^' && glob.charAt(i - 1) == '[') {
+                    regex.append('^');
+                } else if (c == '-') {
+                    regex.append('-');
+                } else {
+                    appendLiteral(regex, c);
+                }
+            } else if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else if (c == '[' && glob.indexOf(']', i + 1) > i + 1) {
+                inClass = true;
+                regex.append('[');
+            } else {
+                appendLiteral(regex, c);
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    // A backslash makes any character other than a letter or digit literal, inside and outside of classes
+    private static void appendLiteral(StringBuilder regex, char c) {
+
+        if (!Character.isLetterOrDigit(c)) {
+            regex.append('\\');
+        }
+        regex.append(c);
+    }
+
+    /**
+     * Drops the stores of the set; their direct memory is released once the buffers are garbage collected.
+     */
+    @Override
+    public Mono<Boolean> deleteSet(String set) {
+
+        return Mono.fromCallable(() -> {
+            boolean hadLists = listStores.remove(set) != null;
+            return stores.remove(set) != null || hadLists;
+        });
+    }
+
+    @Override
+    public Mono<Void> replaceList(String set, String key, List<byte[]> elements, long ttlMillis) {
+
+        return Mono.fromRunnable(() -> {
+            OffHeapStore store = getListStore(set);
+            long now = System.currentTimeMillis();
+            long expiresAt = ttlMillis > 0 ? now + ttlMillis : 0;
+            synchronized (listLock(key)) {
+                removeList(store, key, now);
+                if (!elements.isEmpty()) {
+                    writeElements(store, key, 0, elements, expiresAt, now);
+                }
+            }
+        });
+    }
+
+    @Override
+    public Mono<Long> appendToList(String set, String key, List<byte[]> elements) {
+
+        return Mono.fromCallable(() -> {
+            OffHeapStore store = getListStore(set);
+            long now = System.currentTimeMillis();
+            synchronized (listLock(key)) {
+                ByteBuffer header = readListHeader(store, key, now);
+                long length = header == null ? 0 : header.getLong(0);
+                if (elements.isEmpty()) {
+                    return length;
+                }
+                long expiresAt = header == null ? 0 : header.getLong(8);
+                writeElements(store, key, length, elements, expiresAt, now);
+                return length + elements.size();
+            }
+        });
+    }
+
+    @Override
+    public Mono<List<byte[]>> getListRange(String set, String key, long from, long to) {
+
+        return Mono.fromCallable(() -> {
+            OffHeapStore store = listStores.get(set);
+            List<byte[]> elements = new ArrayList<>();
+            if (store == null) {
+                return elements;
+            }
+            long now = System.currentTimeMillis();
+            synchronized (listLock(key)) {
+                ByteBuffer header = readListHeader(store, key, now);
+                long end = header == null ? 0 : Math.min(to, header.getLong(0));
+                for (long index = Math.max(0, from); index < end; index++) {
+                    byte[] element = store.get(elementKey(key, index), now);
+                    if (element == null) {
+                        log.info("Dropping off-heap list with evicted elements :: {} :: {}", set, key);
+                        removeList(store, key, now);
+                        return new ArrayList<byte[]>();
+                    }
+                    elements.add(element);
+                }
+            }
+            return elements;
+        });
+    }
+
+    @Override
+    public Mono<Long> getListLength(String set, String key) {
+
+        return Mono.fromCallable(() -> {
+            OffHeapStore store = listStores.get(set);
+            ByteBuffer header = store == null ? null : readListHeader(store, key, System.currentTimeMillis());
+            return header == null ? 0L : header.getLong(0);
+        });
+    }
+
+    @Override
+    public Mono<Long> removeLists(String set, Collection<String> keys) {
+
+        return Mono.fromCallable(() -> {
+            OffHeapStore store = listStores.get(set);
+            if (store == null) {
+                return 0L;
+            }
+            long now = System.currentTimeMillis();
+            long removed = 0;
+            for (String key : keys) {
+                synchronized (listLock(key)) {
+                    if (removeList(store, key, now)) {
+                        removed++;
+                    }
+                }
+            }
+            return removed;
+        });
+    }
+
+    /**
+     * Writes elements from the given index on and then the header, so that readers never see a length beyond the
+     * written elements. Elements which do not fit in a segment fail the write and leave the list as it was.
+     */
+    private static void writeElements(OffHeapStore store, String key, long start, List<byte[]> elements, long expiresAt, long now) {
+
+        for (int i = 0; i < elements.size(); i++) {
+            try {
+                store.put(elementKey(key, start + i), elements.get(i), expiresAt, now);
+            } catch (EntryTooLargeException e) {
+                for (int written = 0; written < i; written++) {
+                    store.remove(elementKey(key, start + written), now);
+                }
+                throw e;
+            }
+        }
+        ByteBuffer header = ByteBuffer.allocate(LIST_HEADER_BYTES);
+        header.putLong(0, start + elements.size()).putLong(8, expiresAt);
+        store.put(headerKey(key), header.array(), expiresAt, now);
+    }
+
+    private static ByteBuffer readListHeader(OffHeapStore store, String key, long now) {
+
+        byte[] header = store.get(headerKey(key), now);
+        return header == null ? null : ByteBuffer.wrap(header);
+    }
+
+    private static boolean removeList(OffHeapStore store, String key, long now) {
+
+        ByteBuffer header = readListHeader(store, key, now);
+        if (header == null) {
+            return false;
+        }
+        long length = header.getLong(0);
+        for (long index = 0; index < length; index++) {
+            store.remove(elementKey(key, index), now);
+        }
+        return store.remove(headerKey(key), now);
+    }
+
+    private Object listLock(String key) {
+        return listLocks[(key.hashCode() & 0x7FFFFFFF) % LIST_LOCK_STRIPES];
+    }
+
+    private static String headerKey(String key) {
+        return key + LIST_SEPARATOR + '#';
+    }
+
+    private static String elementKey(String key, long index) {
+        return key + LIST_SEPARATOR + index;
+    }
+}
@@ -0,0 +1,376 @@
+package com.github.srilaxmi.cache.backend;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * One lock-guarded share of an OffHeapStore.
+ *
+ * Records are appended to a ring in a direct buffer as {@code [key length][value length][expires at][key][value]}.
+ * A write always appends a new record, and once the ring is full the oldest records are dropped to make room, so the
+ * memory in use never exceeds the buffer and eviction is first in, first out. Records which were overwritten, removed
+ * or have expired stay in the ring as garbage until eviction reaches them.
+ *
+ * The index is an open-addressing table of longs, one per live key, holding the key hash in the high half and the
+ * record offset (plus one, so that zero means empty) in the low half. It is the only on-heap part and costs 8 bytes per
+ * slot; keys are compared against the record bytes in the buffer.
+ */
+final class OffHeapSegment {
+
+    // key length, value length, expires at
+    static final int HEADER_BYTES = 16;
+
+    private static final long EMPTY = 0L;
+    private static final long TOMBSTONE = -1L;
+    private static final int MIN_SLOTS = 64;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final ByteBuffer data;
+
+    // Duplicate of data used for bulk copies, so that the position of data is never touched
+    private final ByteBuffer cursor;
+
+    private final int capacity;
+
+    private long[] slots = new long[MIN_SLOTS];
+
+    // Slots in use, live and tombstones
+    private int occupied;
+
+    private int live;
+
+    // Oldest record, next write position and end of the records before the ring wrapped
+    private int head;
+    private int tail;
+    private int wrapAt;
+
+    // Bytes between head and tail, garbage included
+    private int used;
+
+    OffHeapSegment(int capacity) {
+        this.capacity = capacity;
+        this.data = ByteBuffer.allocateDirect(capacity);
+        this.cursor = data.duplicate();
+        this.wrapAt = capacity;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the value of a key, or null when it is not present or has expired.
+     */
+    byte[] get(byte[] key, int hash, long now) {
+
+        lock.lock();
+        try {
+            int slot = find(key, hash);
+            if (slot < 0) {
+                return null;
+            }
+            int offset = offsetOf(slots[slot]);
+            if (isExpired(offset, now)) {
+                removeSlot(slot);
+                return null;
+            }
+            byte[] value = new byte[data.getInt(offset + 4)];
+            read(offset + HEADER_BYTES + key.length, value);
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes a value, expiresAt being 0 for values which do not expire, and tells whether the key was created. The
+     * record must fit in the segment.
+     */
+    boolean put(byte[] key, int hash, byte[] value, long expiresAt, long now) {
+
+        int size = HEADER_BYTES + key.length + value.length;
+        if (size > capacity) {
+            throw new EntryTooLargeException("Entry of " + size + " bytes does not fit in a segment of " + capacity + " bytes");
+        }
+
+        lock.lock();
+        try {
+            makeRoom(size);
+
+            int offset = tail;
+            data.putInt(offset, key.length);
+            data.putInt(offset + 4, value.length);
+            data.putLong(offset + 8, expiresAt);
+            write(offset + HEADER_BYTES, key);
+            write(offset + HEADER_BYTES + key.length, value);
+            tail += size;
+            used += size;
+
+            int slot = find(key, hash);
+            if (slot >= 0) {
+                boolean expired = isExpired(offsetOf(slots[slot]), now);
+                slots[slot] = slotOf(hash, offset);
+                return expired;
+            }
+            insert(hash, offset);
+            live++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes a value unless the key is present and unexpired, and tells whether it was written.
+     */
+    boolean putIfAbsent(byte[] key, int hash, byte[] value, long expiresAt, long now) {
+
+        lock.lock();
+        try {
+            int slot = find(key, hash);
+            if (slot >= 0 && !isExpired(offsetOf(slots[slot]), now)) {
+                return false;
+            }
+            return put(key, hash, value, expiresAt, now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a key and tells whether it was present.
+     */
+    boolean remove(byte[] key, int hash, long now) {
+
+        lock.lock();
+        try {
+            int slot = find(key, hash);
+            if (slot < 0) {
+                return false;
+            }
+            boolean expired = isExpired(offsetOf(slots[slot]), now);
+            removeSlot(slot);
+            return !expired;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of keys in the index, including expired keys which have not been read or evicted yet.
+     */
+    int size() {
+
+        lock.lock();
+        try {
+            return live;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands a copy of every live, unexpired entry to the consumer, holding the lock of the segment meanwhile.
+     */
+    void forEach(long now, BiConsumer<byte[], byte[]> consumer) {
+
+        lock.lock();
+        try {
+            for (long slot : slots) {
+                if (slot == EMPTY || slot == TOMBSTONE) {
+                    continue;
+                }
+                int offset = offsetOf(slot);
+                if (isExpired(offset, now)) {
+                    continue;
+                }
+                byte[] key = new byte[data.getInt(offset)];
+                byte[] value = new byte[data.getInt(offset + 4)];
+                read(offset + HEADER_BYTES, key);
+                read(offset + HEADER_BYTES + key.length, value);
+                consumer.accept(key, value);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void clear() {
+
+        lock.lock();
+        try {
+            slots = new long[MIN_SLOTS];
+            occupied = 0;
+            live = 0;
+            head = 0;
+            tail = 0;
+            wrapAt = capacity;
+            used = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees space for a record of the given size at tail, evicting the oldest records as needed.
+     */
+    private void makeRoom(int size) {
+
+        while (true) {
+            if (used == 0) {
+                head = 0;
+                tail = 0;
+                wrapAt = capacity;
+            }
+            if (tail > head || used == 0) {
+                // Free space runs from tail to the end of the buffer, then from its start up to head
+                if (capacity - tail >= size) {
+                    return;
+                }
+                wrapAt = tail;
+                tail = 0;
+                continue;
+            }
+            // The ring has wrapped, free space runs from tail up to head
+            if (head - tail >= size) {
+                return;
+            }
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+
+        int offset = head;
+        byte[] key = new byte[data.getInt(offset)];
+        read(offset + HEADER_BYTES, key);
+        int size = HEADER_BYTES + key.length + data.getInt(offset + 4);
+
+        int slot = find(key, OffHeapStore.hash(key));
+        if (slot >= 0 && offsetOf(slots[slot]) == offset) {
+            removeSlot(slot);
+        }
+
+        used -= size;
+        head += size;
+        if (head >= wrapAt) {
+            head = 0;
+            wrapAt = capacity;
+        }
+    }
+
+    private boolean isExpired(int offset, long now) {
+
+        long expiresAt = data.getLong(offset + 8);
+        return expiresAt != 0 && expiresAt <= now;
+    }
+
+    private int find(byte[] key, int hash) {
+
+        int mask = slots.length - 1;
+        int index = mix(hash) & mask;
+        for (int probes = 0; probes < slots.length; probes++) {
+            long slot = slots[index];
+            if (slot == EMPTY) {
+                return -1;
+            }
+            if (slot != TOMBSTONE && (int) (slot >>> 32) == hash && keyEquals(offsetOf(slot), key)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(int hash, int offset) {
+
+        if ((occupied + 1) * 4L > slots.length * 3L) {
+            rehash();
+        }
+        int mask = slots.length - 1;
+        int index = mix(hash) & mask;
+        while (slots[index] != EMPTY && slots[index] != TOMBSTONE) {
+            index = (index + 1) & mask;
+        }
+        if (slots[index] == EMPTY) {
+            occupied++;
+        }
+        slots[index] = slotOf(hash, offset);
+    }
+
+    private void removeSlot(int slot) {
+
+        slots[slot] = TOMBSTONE;
+        live--;
+    }
+
+    /**
+     * Rebuilds the table without its tombstones, at a size where the live keys fill at most half of it.
+     */
+    private void rehash() {
+
+        int length = MIN_SLOTS;
+        while (length < (live + 1) * 2) {
+            length <<= 1;
+        }
+        long[] previous = slots;
+        slots = new long[length];
+        occupied = 0;
+        int mask = length - 1;
+        for (long slot : previous) {
+            if (slot == EMPTY || slot == TOMBSTONE) {
+                continue;
+            }
+            int index = mix((int) (slot >>> 32)) & mask;
+            while (slots[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            slots[index] = slot;
+            occupied++;
+        }
+    }
+
+    private boolean keyEquals(int offset, byte[] key) {
+
+        if (data.getInt(offset) != key.length) {
+            return false;
+        }
+        int start = offset + HEADER_BYTES;
+        for (int i = 0; i < key.length; i++) {
+            if (data.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void read(int position, byte[] target) {
+        cursor.position(position);
+        cursor.get(target);
+    }
+
+    private void write(int position, byte[] source) {
+        cursor.position(position);
+        cursor.put(source);
+    }
+
+    private static long slotOf(int hash, int offset) {
+        return ((long) hash << 32) | ((offset + 1) & 0xFFFFFFFFL);
+    }
+
+    private static int offsetOf(long slot) {
+        return (int) slot - 1;
+    }
+
+    // Murmur3 finalizer, spreads the key hash over all bits before it is masked
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.srilaxmi.cache.backend;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * The off-heap storage of one set: a fixed number of OffHeapSegments, each owning an equal share of the memory and
+ * its own lock, with keys spread over them by hash. Threads working on different segments never contend. The
+ * segments never reserve more than maxBytes together, a store too small for the asked segment count gets fewer.
+ *
+ * Backs the sets of OffHeapCacheBackend and the off-heap tier of LocalCache.
+ */
+public final class OffHeapStore {
+
+    // Smallest segment worth its lock; small stores get fewer segments rather than more memory than asked for
+    private static final long MIN_SEGMENT_BYTES = 4096;
+
+    private final OffHeapSegment[] segments;
+
+    private final int segmentShift;
+
+    public OffHeapStore(long maxBytes, int segmentCount) {
+
+        int count = Integer.highestOneBit(Math.max(1, segmentCount - 1)) << 1;
+        if (segmentCount <= 1) {
+            count = 1;
+        }
+        while (count > 1 && maxBytes / count < MIN_SEGMENT_BYTES) {
+            count >>= 1;
+        }
+        int segmentBytes = (int) Math.max(0, Math.min(Integer.MAX_VALUE - 8, maxBytes / count));
+        this.segments = new OffHeapSegment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new OffHeapSegment(segmentBytes);
+        }
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(count);
+    }
+
+    /**
+     * Returns the value of a key, or null when it is not present or has expired.
+     */
+    public byte[] get(String key, long now) {
+
+        byte[] keyBytes = toBytes(key);
+        int hash = hash(keyBytes);
+        return segmentFor(hash).get(keyBytes, hash, now);
+    }
+
+    /**
+     * Writes a value, expiresAt being 0 for values which do not expire, and tells whether the key was created. Entries
+     * larger than a segment are rejected with an EntryTooLargeException.
+     */
+    public boolean put(String key, byte[] value, long expiresAt, long now) {
+
+        byte[] keyBytes = toBytes(key);
+        int hash = hash(keyBytes);
+        return segmentFor(hash).put(keyBytes, hash, value, expiresAt, now);
+    }
+
+    /**
+     * Writes a value unless the key is present and unexpired, and tells whether it was written.
+     */
+    public boolean putIfAbsent(String key, byte[] value, long expiresAt, long now) {
+
+        byte[] keyBytes = toBytes(key);
+        int hash = hash(keyBytes);
+        return segmentFor(hash).putIfAbsent(keyBytes, hash, value, expiresAt, now);
+    }
+
+    public boolean remove(String key, long now) {
+
+        byte[] keyBytes = toBytes(key);
+        int hash = hash(keyBytes);
+        return segmentFor(hash).remove(keyBytes, hash, now);
+    }
+
+    public int size() {
+
+        int size = 0;
+        for (OffHeapSegment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Hands every live, unexpired entry to the consumer, one segment at a time. Writes to the segment being visited
+     * wait until it is done, so the consumer should be quick.
+     */
+    public void forEach(long now, BiConsumer<String, byte[]> consumer) {
+
+        for (OffHeapSegment segment : segments) {
+            segment.forEach(now, (key, value) -> consumer.accept(new String(key, StandardCharsets.UTF_8), value));
+        }
+    }
+
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Copies of the live, unexpired entries of one segment, for walking a store one segment at a time.
+     */
+    public List<Map.Entry<String, byte[]>> getEntries(int segment, long now) {
+
+        List<Map.Entry<String, byte[]>> entries = new ArrayList<>();
+        segments[segment].forEach(now, (key, value) -> entries.add(
+                new AbstractMap.SimpleImmutableEntry<>(new String(key, StandardCharsets.UTF_8), value)));
+        return entries;
+    }
+
+    public void clear() {
+
+        for (OffHeapSegment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public long getCapacity() {
+        return (long) segments.length * segments[0].getCapacity();
+    }
+
+    // Fibonacci hashing on the top bits, so that the segment does not depend on the bits picking the index slot
+    private OffHeapSegment segmentFor(int hash) {
+        return segmentShift == 32 ? segments[0] : segments[(hash * 0x9E3779B9) >>> segmentShift];
+    }
+
+    static int hash(byte[] key) {
+        return Arrays.hashCode(key);
+    }
+
+    private static byte[] toBytes(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,444 @@
+package com.github.srilaxmi.cache.backend;
+
+import com.github.srilaxmi.cache.configuration.ExpiryProperties;
+import com.github.srilaxmi.cache.configuration.ListProperties;
+import com.github.srilaxmi.cache.configuration.RedissonCustomClient;
+import com.github.srilaxmi.cache.service.NearCache;
+import org.redisson.api.*;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.codec.CompositeCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Sets stored as redis hashes, or as redisson map caches for the expiring sets (see ExpiryProperties). Multi-key
+ * writes and removes are sent as one pipelined batch. Sharded sets (see ShardingProperties) are spread over several
+ * hashes, every operation being routed to the shards of its keys by the ShardRouter. Commands are sent through the
+ * CommandRouter, which picks the nodes serving the reads of the set and bounds every command by its timeout.
+ *
+ * The native list of a key is a redis list named {@code <set>:list:<key>}, so LRANGE, RPUSH and LLEN only move the
+ * elements asked for.
+ */
+@Component
+@ConditionalOnProperty(prefix = "cache.backend", name = "type", havingValue = "redis", matchIfMissing = true)
+public class RedisCacheBackend implements CacheBackend {
+
+    @Autowired
+    private RedissonCustomClient redissonCustomClient;
+
+    @Autowired
+    private NearCache nearCache;
+
+    @Autowired
+    private ExpiryProperties expiryProperties;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private CommandRouter commandRouter;
+
+    @Autowired
+    private ListProperties listProperties;
+
+    // Keys stay plain strings, values are the raw bytes framed by the ValueCodecRegistry
+    public static final Codec VALUE_CODEC = new CompositeCodec(StringCodec.INSTANCE, ByteArrayCodec.INSTANCE);
+
+    private static final String LIST_INFIX = ":list:";
+
+    private volatile RedissonReactiveClient reactiveClient;
+
+    /**
+     * Returns the reactive view of the shared redisson client. The near cache invalidation topic is subscribed once,
+     * together with the first use of the client.
+     */
+    private RedissonReactiveClient getReactiveRedisClient() {
+
+        RedissonReactiveClient client = reactiveClient;
+        if (client != null) {
+            return client;
+        }
+
+        synchronized (this) {
+            if (reactiveClient == null) {
+                RedissonClient redissonClient = redissonCustomClient.getRedissonClient();
+                nearCache.subscribe(redissonClient);
+                reactiveClient = redissonClient.reactive();
+            }
+            return reactiveClient;
+        }
+    }
+
+    /**
+     * A hash of a set: the set itself, or one of its shards (see ShardLayout). Expiring sets, which are never sharded,
+     * are map caches (see ExpiryProperties), all the others plain hashes.
+     */
+    private RMapReactive<String, byte[]> getMap(String set, String name) {
+        return getMap(getReactiveRedisClient(), set, name);
+    }
+
+    private RMapReactive<String, byte[]> getMap(RedissonReactiveClient client, String set, String name) {
+
+        if (expiryProperties.isExpiring(set)) {
+            return client.getMapCache(name, VALUE_CODEC);
+        }
+        return client.getMap(name, VALUE_CODEC);
+    }
+
+    private RMapReactive<String, byte[]> getMap(RBatchReactive batch, String set, String name) {
+
+        if (expiryProperties.isExpiring(set)) {
+            return batch.getMapCache(name, VALUE_CODEC);
+        }
+        return batch.getMap(name, VALUE_CODEC);
+    }
+
+    private Mono<Boolean> fastPut(RMapReactive<String, byte[]> map, String key, byte[] value, Expiry expiry) {
+
+        if (expiry == null) {
+            return map.fastPut(key, value);
+        }
+        return ((RMapCacheReactive<String, byte[]>) map).fastPut(
+                key, value,
+                expiry.nextTtlMillis(), TimeUnit.MILLISECONDS,
+                expiry.getMaxIdleMillis(), TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * While resharding, keys the new shard does not have yet are read from their previous shard.
+     */
+    @Override
+    public Mono<byte[]> get(String set, String key) {
+
+        return shardRouter.getLayout(set).flatMap(layout -> {
+            String shard = layout.shardOf(set, key);
+            Mono<byte[]> value = commandRouter.read(set, "HGET", getReactiveRedisClient(),
+                                                    client -> getMap(client, set, shard).get(key));
+            String previous = layout.previousShardOf(set, key);
+            if (previous == null) {
+                return value;
+            }
+            return value.switchIfEmpty(commandRouter.read(set, "HGET", getReactiveRedisClient(),
+                                                          client -> getMap(client, set, previous).get(key)));
+        });
+    }
+
+    /**
+     * One HMGET per shard holding some of the keys, all of them in flight at once so that the masters of the shards
+     * answer in parallel.
+     */
+    @Override
+    public Mono<Map<String, byte[]>> getAll(String set, Set<String> keys) {
+
+        return shardRouter.getLayout(set).flatMap(layout -> {
+            if (layout.getCount() == 1 && !layout.isMigrating()) {
+                return commandRouter.read(set, "HMGET", keys.size(), getReactiveRedisClient(),
+                                          client -> getMap(client, set, set).getAll(keys));
+            }
+            return getAll(set, groupByShard(keys, key -> layout.shardOf(set, key)))
+                    .flatMap(values -> {
+                        if (!layout.isMigrating()) {
+                            return Mono.just(values);
+                        }
+                        List<String> missing = keys.stream()
+                                .filter(key -> !values.containsKey(key))
+                                .collect(Collectors.toList());
+                        return getAll(set, groupByShard(missing, key -> layout.previousShardOf(set, key)))
+                                .map(previous -> {
+                                    values.putAll(previous);
+                                    return values;
+                                });
+                    });
+        });
+    }
+
+    private Mono<Map<String, byte[]>> getAll(String set, Map<String, Set<String>> keysByShard) {
+
+        return Flux.fromIterable(keysByShard.entrySet())
+                .flatMap(shard -> commandRouter.read(set, "HMGET", shard.getValue().size(), getReactiveRedisClient(),
+                                                     client -> getMap(client, set, shard.getKey()).getAll(shard.getValue())))
+                .collect(HashMap::new, Map::putAll);
+    }
+
+    /**
+     * Groups keys by the hash they belong to, leaving out the keys for which shardOf answers null.
+     */
+    private static Map<String, Set<String>> groupByShard(Collection<String> keys, Function<String, String> shardOf) {
+
+        Map<String, Set<String>> keysByShard = new LinkedHashMap<>();
+        for (String key : keys) {
+            String shard = shardOf.apply(key);
+            if (shard != null) {
+                keysByShard.computeIfAbsent(shard, name -> new LinkedHashSet<>()).add(key);
+            }
+        }
+        return keysByShard;
+    }
+
+    /**
+     * While resharding, a put also removes the key from its previous shard.
+     */
+    @Override
+    public Mono<Boolean> put(String set, String key, byte[] value, Expiry expiry) {
+
+        return shardRouter.getLayout(set).flatMap(layout -> {
+            Mono<Boolean> put = commandRouter.write(set, "HSET", fastPut(getMap(set, layout.shardOf(set, key)), key, value, expiry));
+            String previous = layout.previousShardOf(set, key);
+            if (previous == null) {
+                return put;
+            }
+            return put.flatMap(created -> commandRouter.write(set, "HDEL", getMap(set, previous).fastRemove(key))
+                    .map(removed -> created && removed == 0));
+        });
+    }
+
+    @Override
+    public Mono<Boolean> putIfAbsent(String set, String key, byte[] value, Expiry expiry) {
+
+        return shardRouter.getLayout(set).flatMap(layout -> {
+            RMapReactive<String, byte[]> map = getMap(set, layout.shardOf(set, key));
+            Mono<Boolean> put;
+            if (expiry == null) {
+                put = commandRouter.write(set, "HSETNX", map.fastPutIfAbsent(key, value));
+            } else {
+                put = commandRouter.write(set, "HSETNX", ((RMapCacheReactive<String, byte[]>) map).fastPutIfAbsent(
+                        key, value,
+                        expiry.nextTtlMillis(), TimeUnit.MILLISECONDS,
+                        expiry.getMaxIdleMillis(), TimeUnit.MILLISECONDS
+                ));
+            }
+            String previous = layout.previousShardOf(set, key);
+            if (previous == null) {
+                return put;
+            }
+            return commandRouter.write(set, "HEXISTS", getMap(set, previous).containsKey(key))
+                    .flatMap(present -> present ? Mono.just(false) : put);
+        });
+    }
+
+    /**
+     * One batch for all shards, which redisson splits per master and sends to all of them at once.
+     */
+    @Override
+    public Mono<List<Boolean>> putAll(String set, List<Map.Entry<String, byte[]>> entries, Expiry expiry) {
+
+        return shardRouter.getLayout(set).flatMap(layout -> Mono.defer(() -> {
+            RBatchReactive batch = getReactiveRedisClient().createBatch(BatchOptions.defaults());
+            Map<String, RMapReactive<String, byte[]>> maps = new HashMap<>();
+            entries.forEach(entry -> fastPut(getMap(batch, maps, set, layout.shardOf(set, entry.getKey())),
+                                             entry.getKey(), entry.getValue(), expiry));
+            // Removes from the previous shards come after the puts, so the first responses are the ones of the puts
+            entries.forEach(entry -> {
+                String previous = layout.previousShardOf(set, entry.getKey());
+                if (previous != null) {
+                    getMap(batch, maps, set, previous).fastRemove(entry.getKey());
+                }
+            });
+            return executeBatch(set, batch, Boolean.TRUE::equals)
+                    .map(created -> created.subList(0, entries.size()));
+        }));
+    }
+
+    @Override
+    public Mono<List<Boolean>> removeAll(String set, List<String> keys) {
+
+        return shardRouter.getLayout(set).flatMap(layout -> Mono.defer(() -> {
+            RBatchReactive batch = getReactiveRedisClient().createBatch(BatchOptions.defaults());
+            Map<String, RMapReactive<String, byte[]>> maps = new HashMap<>();
+            keys.forEach(key -> getMap(batch, maps, set, layout.shardOf(set, key)).fastRemove(key));
+            List<Integer> movedKeys = new ArrayList<>();
+            for (int i = 0; i < keys.size(); i++) {
+                String previous = layout.previousShardOf(set, keys.get(i));
+                if (previous != null) {
+                    getMap(batch, maps, set, previous).fastRemove(keys.get(i));
+                    movedKeys.add(i);
+                }
+            }
+            return executeBatch(set, batch, Long.valueOf(1L)::equals)
+                    .map(removed -> {
+                        List<Boolean> existed = new ArrayList<>(removed.subList(0, keys.size()));
+                        for (int j = 0; j < movedKeys.size(); j++) {
+                            int i = movedKeys.get(j);
+                            existed.set(i, existed.get(i) || removed.get(keys.size() + j));
+                        }
+                        return existed;
+                    });
+        }));
+    }
+
+    private RMapReactive<String, byte[]> getMap(
+            RBatchReactive batch,
+            Map<String, RMapReactive<String, byte[]>> maps,
+            String set,
+            String name
+    ) {
+        return maps.computeIfAbsent(name, ignored -> getMap(batch, set, name));
+    }
+
+    /**
+     * Executes a batch and maps the response of every command, in command order.
+     */
+    private Mono<List<Boolean>> executeBatch(String set, RBatchReactive batch, Predicate<Object> succeeded) {
+
+        return commandRouter.write(set, "BATCH", batch.execute())
+                .map(result -> result.getResponses()
+                        .stream()
+                        .map(succeeded::test)
+                        .collect(Collectors.toList()));
+    }
+
+    @Override
+    public Mono<Long> remove(String set, Collection<String> keys) {
+
+        return shardRouter.getLayout(set).flatMap(layout -> {
+            Map<String, Set<String>> keysByShard = groupByShard(keys, key -> layout.shardOf(set, key));
+            groupByShard(keys, key -> layout.previousShardOf(set, key)).forEach((shard, shardKeys) ->
+                    keysByShard.computeIfAbsent(shard, name -> new LinkedHashSet<>()).addAll(shardKeys));
+            return Flux.fromIterable(keysByShard.entrySet())
+                    .flatMap(shard -> commandRouter.write(set, "HDEL", getMap(set, shard.getKey())
+                            .fastRemove(shard.getValue().toArray(new String[0]))))
+                    .reduce(0L, Long::sum);
+        });
+    }
+
+    /**
+     * Sum of the HLEN of all shards; keys being moved by a resharding may be counted twice.
+     */
+    @Override
+    public Mono<Integer> size(String set) {
+
+        return shardRouter.getLayout(set).flatMap(layout -> Flux.fromIterable(layout.getShardNames(set))
+                .flatMap(name -> commandRouter.read(set, "HLEN", getReactiveRedisClient(), client -> getMap(client, set, name).size()))
+                .reduce(0, Integer::sum));
+    }
+
+    /**
+     * HSCAN based, one shard after the other, the next page is only fetched once the previous one has been consumed.
+     * Keys being moved by a resharding may be returned twice.
+     */
+    @Override
+    public Flux<Map.Entry<String, byte[]>> scan(String set, String pattern, int count) {
+
+        return shardRouter.getLayout(set).flatMapMany(layout -> Flux.fromIterable(layout.getShardNames(set))
+                .concatMap(name -> {
+                    RMapReactive<String, byte[]> map = getMap(commandRouter.getReadClient(set, getReactiveRedisClient()), set, name);
+                    return pattern == null ? map.entryIterator(count) : map.entryIterator(pattern, count);
+                }, 1));
+    }
+
+    @Override
+    public Mono<Boolean> deleteSet(String set) {
+
+        // Only list sets have native lists; finding them scans the whole keyspace, every master of a cluster
+        Mono<Long> lists = !listProperties.isListSet(set) ? Mono.just(0L)
+                : getReactiveRedisClient().getKeys().deleteByPattern(escapeGlob(set) + LIST_INFIX + "*");
+        Mono<Boolean> shards = shardRouter.getLayout(set)
+                .flatMap(layout -> Flux.fromIterable(layout.getShardNames(set))
+                        .flatMap(name -> commandRouter.write(set, "DEL", getMap(set, name).delete()))
+                        .reduce(false, Boolean::logicalOr));
+        return shards.zipWith(lists, (deleted, deletedLists) -> deleted || deletedLists > 0);
+    }
+
+    private static String listName(String set, String key) {
+        return set + LIST_INFIX + key;
+    }
+
+    private RListReactive<byte[]> getList(RedissonReactiveClient client, String set, String key) {
+        return client.getList(listName(set, key), ByteArrayCodec.INSTANCE);
+    }
+
+    /**
+     * DEL, RPUSH and PEXPIRE in one MULTI/EXEC, so readers see either the old or the new list.
+     */
+    @Override
+    public Mono<Void> replaceList(String set, String key, List<byte[]> elements, long ttlMillis) {
+
+        return Mono.defer(() -> {
+            RBatchReactive batch = getReactiveRedisClient().createBatch(
+                    BatchOptions.defaults().executionMode(BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC));
+            RListReactive<byte[]> list = batch.getList(listName(set, key), ByteArrayCodec.INSTANCE);
+            list.delete();
+            list.addAll(elements);
+            if (ttlMillis > 0) {
+                list.expire(Duration.ofMillis(ttlMillis));
+            }
+            return commandRouter.write(set, "BATCH", batch.execute()).then();
+        });
+    }
+
+    @Override
+    public Mono<Long> appendToList(String set, String key, List<byte[]> elements) {
+
+        if (elements.isEmpty()) {
+            return getListLength(set, key);
+        }
+        return Mono.defer(() -> {
+            RBatchReactive batch = getReactiveRedisClient().createBatch(
+                    BatchOptions.defaults().executionMode(BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC));
+            RListReactive<byte[]> list = batch.getList(listName(set, key), ByteArrayCodec.INSTANCE);
+            list.addAll(elements);
+            list.size();
+            return commandRouter.write(set, "RPUSH", batch.execute())
+                    .map(result -> ((Number) result.getResponses().get(1)).longValue());
+        });
+    }
+
+    @Override
+    public Mono<List<byte[]>> getListRange(String set, String key, long from, long to) {
+
+        if (from >= to) {
+            return Mono.just(List.of());
+        }
+        int last = (int) Math.min(Integer.MAX_VALUE, to - 1);
+        int size = (int) Math.min(Integer.MAX_VALUE, to - from);
+        return commandRouter.read(set, "LRANGE", size, getReactiveRedisClient(),
+                                  client -> getList(client, set, key).range((int) from, last));
+    }
+
+    @Override
+    public Mono<Long> getListLength(String set, String key) {
+
+        return commandRouter.read(set, "LLEN", getReactiveRedisClient(), client -> getList(client, set, key).size())
+                .map(Integer::longValue);
+    }
+
+    @Override
+    public Mono<Long> removeLists(String set, Collection<String> keys) {
+
+        String[] names = keys.stream().map(key -> listName(set, key)).toArray(String[]::new);
+        return commandRouter.write(set, "DEL", getReactiveRedisClient().getKeys().delete(names));
+    }
+
+    // Keeps glob characters in set names from widening the pattern
+    private static String escapeGlob(String value) {
+
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '*' || c == '?' || c == '[' || c == ']' || c == '\\') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
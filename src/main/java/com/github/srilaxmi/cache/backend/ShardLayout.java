@@ -0,0 +1,126 @@
+package com.github.srilaxmi.cache.backend;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * How the keys of a set are spread over redis hashes: {@code count} shards named {@code <set>:shard:<index>}, a key
+ * going to the shard given by its hash. A count of 1 is the plain hash named after the set, as used by unsharded sets.
+ *
+ * While a set is resharded the layout also holds the previous count. Keys are then written to their new shard only,
+ * and read from their previous shard when the new one does not have them yet.
+ *
+ * Stored in redis as {@code "<count>"}, or {@code "<previous count>><count>"} while resharding.
+ */
+public final class ShardLayout {
+
+    static final ShardLayout SINGLE = new ShardLayout(1, 0);
+
+    private static final String SHARD_INFIX = ":shard:";
+
+    private final int count;
+
+    // 0 unless the set is being resharded
+    private final int previousCount;
+
+    ShardLayout(int count, int previousCount) {
+        if (count < 1 || previousCount < 0) {
+            throw new IllegalArgumentException("Invalid shard layout " + previousCount + ">" + count);
+        }
+        this.count = count;
+        this.previousCount = previousCount;
+    }
+
+    static ShardLayout parse(String value) {
+
+        int separator = value.indexOf('>');
+        if (separator < 0) {
+            return new ShardLayout(Integer.parseInt(value.trim()), 0);
+        }
+        return new ShardLayout(Integer.parseInt(value.substring(separator + 1).trim()),
+                               Integer.parseInt(value.substring(0, separator).trim()));
+    }
+
+    String format() {
+        return isMigrating() ? previousCount + ">" + count : String.valueOf(count);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getPreviousCount() {
+        return previousCount;
+    }
+
+    public boolean isMigrating() {
+        return previousCount > 0;
+    }
+
+    /**
+     * The hash holding a key.
+     */
+    String shardOf(String set, String key) {
+        return shardName(set, count, indexOf(key, count));
+    }
+
+    /**
+     * The hash which held a key before the resharding in progress, or null when there is none or it is the same as
+     * the current one.
+     */
+    String previousShardOf(String set, String key) {
+
+        if (!isMigrating()) {
+            return null;
+        }
+        String previous = shardName(set, previousCount, indexOf(key, previousCount));
+        return previous.equals(shardOf(set, key)) ? null : previous;
+    }
+
+    /**
+     * All hashes which may hold keys of the set: the current shards, followed by the previous ones while resharding.
+     */
+    List<String> getShardNames(String set) {
+
+        Set<String> names = new LinkedHashSet<>(shardNames(set, count));
+        if (isMigrating()) {
+            names.addAll(shardNames(set, previousCount));
+        }
+        return new ArrayList<>(names);
+    }
+
+    static List<String> shardNames(String set, int count) {
+
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(shardName(set, count, i));
+        }
+        return names;
+    }
+
+    private static String shardName(String set, int count, int index) {
+        return count <= 1 ? set : set + SHARD_INFIX + index;
+    }
+
+    // String.hashCode is the same on every JVM, so all instances route a key alike
+    private static int indexOf(String key, int count) {
+        return count <= 1 ? 0 : Math.floorMod(mix(key.hashCode()), count);
+    }
+
+    // Murmur3 finalizer, spreads similar keys over all shards
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+}
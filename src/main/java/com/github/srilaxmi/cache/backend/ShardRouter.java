@@ -0,0 +1,226 @@
+package com.github.srilaxmi.cache.backend;
+
+import com.github.srilaxmi.cache.configuration.ExpiryProperties;
+import com.github.srilaxmi.cache.configuration.RedissonCustomClient;
+import com.github.srilaxmi.cache.configuration.ShardingProperties;
+import com.github.srilaxmi.cache.metrics.RedisCommandMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatchReactive;
+import org.redisson.api.RMapReactive;
+import org.redisson.api.RedissonReactiveClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shard layouts of the sharded sets (see ShardingProperties) and their resharding.
+ *
+ * The layout of every set is kept in the redis hash {@code cache-mate:shard-layouts}, so that all instances route
+ * keys alike, and is re-read by every instance once per {@code refresh-interval}.
+ *
+ * Resharding first marks the set as moving from the previous to the new shard count, then waits until every instance
+ * has seen that: from then on keys are only written to their new shard and read from their previous shard as a
+ * fallback. It then walks the previous shards and moves every key whose shard changes, HSETNX into the new shard
+ * followed by HDEL from the previous one, so a key written meanwhile is never overwritten by its older value. Emptied
+ * hashes disappear on their own. A resharding that stopped halfway is resumed by asking for the same shard count again.
+ * A key deleted in the instant it is being moved may come back.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "cache.backend", name = "type", havingValue = "redis", matchIfMissing = true)
+public class ShardRouter {
+
+    private static final String LAYOUTS = "cache-mate:shard-layouts";
+
+    @Autowired
+    private ShardingProperties shardingProperties;
+
+    @Autowired
+    private ExpiryProperties expiryProperties;
+
+    @Autowired
+    private RedissonCustomClient redissonCustomClient;
+
+    @Autowired
+    private RedisCommandMetrics redisCommandMetrics;
+
+    // Layout per sharded set, cached for the refresh interval
+    private final Map<String, Mono<ShardLayout>> layouts = new ConcurrentHashMap<>();
+
+    // Keys moved by the last resharding of every set run by this instance
+    private final Map<String, AtomicLong> movedKeys = new ConcurrentHashMap<>();
+
+    private final Set<String> mismatchesLogged = ConcurrentHashMap.newKeySet();
+
+    private volatile RedissonReactiveClient reactiveClient;
+
+    @PostConstruct
+    public void validate() {
+
+        shardingProperties.getSets().forEach((set, settings) -> {
+            if (expiryProperties.isExpiring(set)) {
+                throw new IllegalStateException("Set " + set + " is listed under cache.expiry and cannot be sharded");
+            }
+            if (settings.getShards() < 1) {
+                throw new IllegalStateException("Set " + set + " needs at least one shard");
+            }
+        });
+    }
+
+    private RedissonReactiveClient getReactiveRedisClient() {
+
+        RedissonReactiveClient client = reactiveClient;
+        if (client == null) {
+            client = redissonCustomClient.getRedissonClient().reactive();
+            reactiveClient = client;
+        }
+        return client;
+    }
+
+    private RMapReactive<String, String> getLayouts() {
+        return getReactiveRedisClient().getMap(LAYOUTS, StringCodec.INSTANCE);
+    }
+
+    /**
+     * The layout of a set; the plain hash of the set for sets which are not sharded.
+     */
+    public Mono<ShardLayout> getLayout(String set) {
+
+        if (!shardingProperties.isSharded(set)) {
+            return Mono.just(ShardLayout.SINGLE);
+        }
+        Mono<ShardLayout> layout = layouts.get(set);
+        if (layout != null) {
+            return layout;
+        }
+        return layouts.computeIfAbsent(set, name -> loadLayout(name).cache(
+                loaded -> shardingProperties.getRefreshInterval(),
+                error -> Duration.ZERO,
+                () -> Duration.ZERO
+        ));
+    }
+
+    /**
+     * Reads the layout of a set from redis, bypassing the cached one, and stores the configured layout when the set
+     * has none yet.
+     */
+    public Mono<ShardLayout> loadLayout(String set) {
+
+        int configured = shardingProperties.getSettings(set).getShards();
+        // Redisson answers putIfAbsent with the previous value, which takes a script rather than an HSETNX
+        return redisCommandMetrics.record("EVAL", getLayouts().putIfAbsent(set, String.valueOf(configured)))
+                .defaultIfEmpty(String.valueOf(configured))
+                .map(ShardLayout::parse)
+                .doOnNext(layout -> {
+                    if (!layout.isMigrating() && layout.getCount() != configured && mismatchesLogged.add(set)) {
+                        log.warn("Set :: {} :: has {} shards, not the {} configured; reshard it to change the count",
+                                 set, layout.getCount(), configured);
+                    }
+                });
+    }
+
+    public long getMovedKeys(String set) {
+
+        AtomicLong moved = movedKeys.get(set);
+        return moved == null ? 0 : moved.get();
+    }
+
+    /**
+     * Spreads a sharded set over the given number of shards and returns the final layout once all keys have moved.
+     * Fails when another resharding of the set to a different count is in progress.
+     */
+    public Mono<ShardLayout> reshard(String set, int shards) {
+
+        if (!shardingProperties.isSharded(set)) {
+            return Mono.error(new IllegalArgumentException("Set " + set + " is not listed under cache.sharding.sets"));
+        }
+        if (shards < 1) {
+            return Mono.error(new IllegalArgumentException("A set needs at least one shard"));
+        }
+
+        // Two refreshes, so that operations which read the layout just before it changed are done as well
+        Duration settle = shardingProperties.getRefreshInterval().multipliedBy(2);
+        return loadLayout(set).flatMap(current -> {
+
+            if (!current.isMigrating() && current.getCount() == shards) {
+                return Mono.just(current);
+            }
+            if (current.isMigrating() && current.getCount() != shards) {
+                return Mono.error(new IllegalStateException(
+                        "Set " + set + " is being resharded to " + current.getCount() + " shards"));
+            }
+
+            ShardLayout migrating = current.isMigrating() ? current : new ShardLayout(shards, current.getCount());
+            Mono<Boolean> started = current.isMigrating()
+                    ? Mono.just(true)
+                    : redisCommandMetrics.record("HSET", getLayouts().replace(set, current.format(), migrating.format()));
+            return started.flatMap(replaced -> {
+                if (!replaced) {
+                    return Mono.error(new IllegalStateException("Shard layout of set " + set + " changed meanwhile"));
+                }
+                log.info("Resharding set :: {} :: {} to {} shards", set, migrating.getPreviousCount(), shards);
+                AtomicLong moved = new AtomicLong();
+                movedKeys.put(set, moved);
+                ShardLayout finished = new ShardLayout(shards, 0);
+                return Mono.delay(settle)
+                        .then(migrate(set, migrating, moved))
+                        .then(redisCommandMetrics.record("HSET", getLayouts().replace(set, migrating.format(), finished.format())))
+                        .map(done -> {
+                            log.info("Resharded set :: {} :: to {} shards, {} keys moved", set, shards, moved.get());
+                            layouts.remove(set);
+                            return finished;
+                        });
+            });
+        });
+    }
+
+    /**
+     * Moves the keys of the previous shards whose shard changes, one shard and one batch at a time.
+     */
+    private Mono<Void> migrate(String set, ShardLayout layout, AtomicLong moved) {
+
+        return Flux.fromIterable(ShardLayout.shardNames(set, layout.getPreviousCount()))
+                .concatMap(source -> getReactiveRedisClient()
+                        .getMap(source, RedisCacheBackend.VALUE_CODEC)
+                        .entryIterator(shardingProperties.getMigrationBatchSize())
+                        .filter(entry -> !layout.shardOf(set, entry.getKey()).equals(source))
+                        .buffer(shardingProperties.getMigrationBatchSize())
+                        .concatMap(chunk -> move(set, layout, source, chunk)
+                                .doOnSuccess(ignored -> moved.addAndGet(chunk.size()))), 1)
+                .then();
+    }
+
+    /**
+     * Copies a chunk into the new shards and only then removes it from the previous one, so that readers find every
+     * key in at least one of them.
+     */
+    private Mono<Void> move(String set, ShardLayout layout, String source, List<Map.Entry<String, byte[]>> chunk) {
+
+        return Mono.defer(() -> {
+            RBatchReactive copies = getReactiveRedisClient().createBatch(BatchOptions.defaults());
+            List<String> keys = new ArrayList<>(chunk.size());
+            chunk.forEach(entry -> {
+                copies.getMap(layout.shardOf(set, entry.getKey()), RedisCacheBackend.VALUE_CODEC)
+                        .fastPutIfAbsent(entry.getKey(), entry.getValue());
+                keys.add(entry.getKey());
+            });
+            RMapReactive<String, byte[]> previous = getReactiveRedisClient().getMap(source, RedisCacheBackend.VALUE_CODEC);
+            return redisCommandMetrics.record("BATCH", copies.execute())
+                    .then(redisCommandMetrics.record("HDEL", previous.fastRemove(keys.toArray(new String[0]))))
+                    .then();
+        });
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.srilaxmi.cache.codec;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Compression applied on top of an encoded value. The id shares the byte after the format marker with
+ * {@link ValueFormat} ids, so it starts at 0x10 to stay clear of them.
+ */
+@Getter
+@AllArgsConstructor
+public enum CompressionAlgorithm {
+
+    NONE((byte) 0),
+    LZ4((byte) 0x10),
+    ZSTD((byte) 0x11);
+
+    private final byte id;
+
+    /**
+     * Returns the algorithm with the given id, or null if the id is not a compression id.
+     */
+    public static CompressionAlgorithm fromId(byte id) {
+        for (CompressionAlgorithm algorithm : values()) {
+            if (algorithm != NONE && algorithm.id == id) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+}
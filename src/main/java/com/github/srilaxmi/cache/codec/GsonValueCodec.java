@@ -0,0 +1,41 @@
+package com.github.srilaxmi.cache.codec;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The JSON encoding ReactiveRedisCache has always used. Kept as the JSON codec of sets so that existing values and
+ * the shape of decoded objects do not change.
+ */
+public class GsonValueCodec implements ValueCodec {
+
+    private static final Gson gson = new Gson();
+
+    @Override
+    public ValueFormat getFormat() {
+        return ValueFormat.JSON;
+    }
+
+    @Override
+    public void encode(Object value, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        gson.toJson(value, writer);
+        writer.flush();
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, int offset, int length, Type type) {
+        return gson.fromJson(new String(bytes, offset, length, StandardCharsets.UTF_8), type);
+    }
+
+    @Override
+    public void writeJson(byte[] bytes, int offset, int length, OutputStream out) throws IOException {
+        out.write(bytes, offset, length);
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.srilaxmi.cache.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Codec backed by a Jackson {@link ObjectMapper}. The data format is decided by the factory of the mapper, which lets
+ * the same class serve plain JSON as well as the binary Smile and CBOR formats.
+ */
+public class JacksonValueCodec implements ValueCodec {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    @Getter
+    private final ValueFormat format;
+
+    private final ObjectMapper objectMapper;
+
+    public JacksonValueCodec(ValueFormat format, ObjectMapper objectMapper) {
+        this.format = format;
+        this.objectMapper = objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @Override
+    public void encode(Object value, OutputStream out) throws IOException {
+        objectMapper.writeValue(out, value);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, int offset, int length, Type type) throws IOException {
+        return objectMapper.readValue(bytes, offset, length, objectMapper.getTypeFactory().constructType(type));
+    }
+
+    /**
+     * Streams the tokens of the value straight into a JSON generator, so binary formats are transcoded without
+     * building the object tree in between.
+     */
+    @Override
+    public void writeJson(byte[] bytes, int offset, int length, OutputStream out) throws IOException {
+        if (format == ValueFormat.JSON) {
+            out.write(bytes, offset, length);
+            return;
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(bytes, offset, length);
+             JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.srilaxmi.cache.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Serialises cached values to and from bytes in one {@link ValueFormat}.
+ */
+public interface ValueCodec {
+
+    ValueFormat getFormat();
+
+    void encode(Object value, OutputStream out) throws IOException;
+
+    <T> T decode(byte[] bytes, int offset, int length, Type type) throws IOException;
+
+    /**
+     * Writes the encoded value as JSON text without materialising it as objects.
+     */
+    void writeJson(byte[] bytes, int offset, int length, OutputStream out) throws IOException;
+}
@@ -0,0 +1,172 @@
+package com.github.srilaxmi.cache.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.srilaxmi.cache.configuration.CodecProperties;
+import com.github.srilaxmi.cache.configuration.CompressionProperties;
+import com.github.srilaxmi.cache.constants.EntityCacheName;
+import com.github.srilaxmi.cache.metrics.CacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Picks the codec for every cached value and frames the stored bytes.
+ *
+ * Binary values are stored as {@code [MARKER][format id][payload]}. The marker byte 0xFE can never appear in UTF-8
+ * text, so anything that does not start with it is JSON written without a marker - either by an older version of the
+ * service or by a cache that is still configured for JSON. This lets JSON and binary entries live side by side in the
+ * same set while a cache is being migrated.
+ *
+ * Unmarked JSON is decoded with Gson for redis sets and with Jackson for local entity caches, matching how each of
+ * them has been written so far.
+ *
+ * Large values can additionally be compressed, see {@link ValueCompressor} for the layout of compressed values.
+ *
+ * Encoding and decoding time and the size of the stored bytes are recorded per cache, see {@link CacheMetrics}.
+ */
+@Component
+@Slf4j
+public class ValueCodecRegistry {
+
+    static final byte MARKER = (byte) 0xFE;
+
+    static final int HEADER_LENGTH = 2;
+
+    private final CodecProperties codecProperties;
+
+    private final CompressionProperties compressionProperties;
+
+    private final ValueCompressor compressor;
+
+    private final CacheMetrics cacheMetrics;
+
+    private final ValueCodec setJsonCodec = new GsonValueCodec();
+
+    private final ValueCodec entityJsonCodec = new JacksonValueCodec(ValueFormat.JSON, new ObjectMapper());
+
+    private final Map<ValueFormat, ValueCodec> binaryCodecs = new EnumMap<>(ValueFormat.class);
+
+    public ValueCodecRegistry(
+            CodecProperties codecProperties,
+            CompressionProperties compressionProperties,
+            CacheMetrics cacheMetrics
+    ) {
+        this.codecProperties = codecProperties;
+        this.compressionProperties = compressionProperties;
+        this.compressor = new ValueCompressor(cacheMetrics.getMeterRegistry());
+        this.cacheMetrics = cacheMetrics;
+        binaryCodecs.put(ValueFormat.SMILE, new JacksonValueCodec(ValueFormat.SMILE, new ObjectMapper(new SmileFactory())));
+        binaryCodecs.put(ValueFormat.CBOR, new JacksonValueCodec(ValueFormat.CBOR, new ObjectMapper(new CBORFactory())));
+    }
+
+    public ValueFormat getFormat(String set) {
+        return codecProperties.getSets().getOrDefault(set, codecProperties.getDefaultFormat());
+    }
+
+    public ValueFormat getFormat(EntityCacheName entityCacheName) {
+        return codecProperties.getEntities().getOrDefault(entityCacheName, codecProperties.getDefaultFormat());
+    }
+
+    public CompressionProperties.Settings getCompression(String set) {
+        return compressionProperties.getSets().getOrDefault(set, compressionProperties.getDefaults());
+    }
+
+    public CompressionProperties.Settings getCompression(EntityCacheName entityCacheName) {
+        return compressionProperties.getEntities().getOrDefault(entityCacheName, compressionProperties.getDefaults());
+    }
+
+    public byte[] encode(String set, Object value) {
+        long start = System.nanoTime();
+        byte[] encoded = encode(getFormat(set), setJsonCodec, value);
+        byte[] stored = compressor.compress(set, getCompression(set), encoded);
+        cacheMetrics.serialization(set, "encode").record(start, stored.length);
+        return stored;
+    }
+
+    public byte[] encode(EntityCacheName entityCacheName, Object value) {
+        long start = System.nanoTime();
+        byte[] encoded = encode(getFormat(entityCacheName), entityJsonCodec, value);
+        byte[] stored = compressor.compress(entityCacheName.name(), getCompression(entityCacheName), encoded);
+        cacheMetrics.serialization(entityCacheName.name(), "encode").record(start, stored.length);
+        return stored;
+    }
+
+    public <T> T decode(String set, byte[] stored, Type type) {
+        long start = System.nanoTime();
+        T value = decode(stored, type, setJsonCodec);
+        cacheMetrics.serialization(set, "decode").record(start, stored.length);
+        return value;
+    }
+
+    public <T> T decode(byte[] stored, EntityCacheName entityCacheName) {
+        long start = System.nanoTime();
+        Type type = entityCacheName.getClazz() != null
+                ? entityCacheName.getClazz()
+                : entityCacheName.getTypeReference().getType();
+        T value = decode(stored, type, entityJsonCodec);
+        cacheMetrics.serialization(entityCacheName.name(), "decode").record(start, stored.length);
+        return value;
+    }
+
+    /**
+     * Returns a stored value as JSON text. Values stored as JSON are returned as they are, without any copy; binary
+     * values are transcoded token by token and compressed values are decompressed first.
+     */
+    public byte[] toJson(byte[] stored) {
+        try {
+            if (stored.length < HEADER_LENGTH || stored[0] != MARKER) {
+                return stored;
+            }
+            CompressionAlgorithm algorithm = CompressionAlgorithm.fromId(stored[1]);
+            if (algorithm != null) {
+                return toJson(compressor.decompress(algorithm, stored));
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(stored.length * 2);
+            binaryCodecs.get(ValueFormat.fromId(stored[1]))
+                    .writeJson(stored, HEADER_LENGTH, stored.length - HEADER_LENGTH, out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to convert value of " + stored.length + " bytes to json", e);
+        }
+    }
+
+    private byte[] encode(ValueFormat format, ValueCodec jsonCodec, Object value) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            if (format == ValueFormat.JSON) {
+                jsonCodec.encode(value, out);
+            } else {
+                out.write(MARKER);
+                out.write(format.getId());
+                binaryCodecs.get(format).encode(value, out);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode value as " + format, e);
+        }
+    }
+
+    private <T> T decode(byte[] stored, Type type, ValueCodec jsonCodec) {
+        try {
+            if (stored.length < HEADER_LENGTH || stored[0] != MARKER) {
+                return jsonCodec.decode(stored, 0, stored.length, type);
+            }
+            CompressionAlgorithm algorithm = CompressionAlgorithm.fromId(stored[1]);
+            if (algorithm != null) {
+                return decode(compressor.decompress(algorithm, stored), type, jsonCodec);
+            }
+            ValueCodec codec = binaryCodecs.get(ValueFormat.fromId(stored[1]));
+            return codec.decode(stored, HEADER_LENGTH, stored.length - HEADER_LENGTH, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode value of " + stored.length + " bytes", e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.srilaxmi.cache.codec;
+
+import com.github.luben.zstd.Zstd;
+import com.github.srilaxmi.cache.configuration.CompressionProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compresses and decompresses stored values.
+ *
+ * A compressed value is stored as {@code [MARKER][algorithm id][original length (4 bytes)][compressed bytes]}, and
+ * the original bytes are the regular stored value (plain JSON or a marked binary value). Time spent is published as
+ * {@code cache.compression.time} and the achieved ratio as {@code cache.compression.ratio}.
+ */
+public class ValueCompressor {
+
+    static final int HEADER_LENGTH = ValueCodecRegistry.HEADER_LENGTH + Integer.BYTES;
+
+    private static final LZ4Compressor lz4Compressor = LZ4Factory.fastestInstance().fastCompressor();
+
+    private static final LZ4FastDecompressor lz4Decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<CompressionAlgorithm, Timer> compressTimers = new EnumMap<>(CompressionAlgorithm.class);
+
+    private final Map<CompressionAlgorithm, Timer> decompressTimers = new EnumMap<>(CompressionAlgorithm.class);
+
+    // cache.compression.ratio per cache and algorithm, registered once
+    private final Map<String, DistributionSummary> ratios = new ConcurrentHashMap<>();
+
+    public ValueCompressor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (CompressionAlgorithm algorithm : CompressionAlgorithm.values()) {
+            if (algorithm == CompressionAlgorithm.NONE) {
+                continue;
+            }
+            compressTimers.put(algorithm, timer(algorithm, "compress"));
+            decompressTimers.put(algorithm, timer(algorithm, "decompress"));
+        }
+    }
+
+    /**
+     * Compresses the stored value if the settings ask for it and it is large enough. Returns the value unchanged
+     * when compression is off, below the threshold or would not make it smaller.
+     */
+    public byte[] compress(String cacheName, CompressionProperties.Settings settings, byte[] value) {
+
+        CompressionAlgorithm algorithm = settings.getAlgorithm();
+        if (algorithm == CompressionAlgorithm.NONE || value.length < settings.getThreshold()) {
+            return value;
+        }
+
+        long start = System.nanoTime();
+        byte[] compressed;
+        int compressedLength;
+        if (algorithm == CompressionAlgorithm.LZ4) {
+            compressed = new byte[HEADER_LENGTH + lz4Compressor.maxCompressedLength(value.length)];
+            compressedLength = lz4Compressor.compress(value, 0, value.length, compressed, HEADER_LENGTH,
+                                                      compressed.length - HEADER_LENGTH);
+        } else {
+            compressed = new byte[HEADER_LENGTH + (int) Zstd.compressBound(value.length)];
+            long result = Zstd.compressByteArray(compressed, HEADER_LENGTH, compressed.length - HEADER_LENGTH,
+                                                 value, 0, value.length, settings.getLevel());
+            if (Zstd.isError(result)) {
+                throw new IllegalStateException("Zstd compression failed :: " + Zstd.getErrorName(result));
+            }
+            compressedLength = (int) result;
+        }
+        compressTimers.get(algorithm).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        int storedLength = HEADER_LENGTH + compressedLength;
+        if (storedLength >= value.length) {
+            return value;
+        }
+        ratio(cacheName, algorithm).record((double) value.length / storedLength);
+
+        compressed[0] = ValueCodecRegistry.MARKER;
+        compressed[1] = algorithm.getId();
+        ByteBuffer.wrap(compressed, ValueCodecRegistry.HEADER_LENGTH, Integer.BYTES).putInt(value.length);
+        byte[] stored = new byte[storedLength];
+        System.arraycopy(compressed, 0, stored, 0, storedLength);
+        return stored;
+    }
+
+    /**
+     * Returns the original stored value of a compressed value.
+     */
+    public byte[] decompress(CompressionAlgorithm algorithm, byte[] stored) {
+
+        long start = System.nanoTime();
+        int originalLength = ByteBuffer.wrap(stored, ValueCodecRegistry.HEADER_LENGTH, Integer.BYTES).getInt();
+        byte[] value = new byte[originalLength];
+        if (algorithm == CompressionAlgorithm.LZ4) {
+            lz4Decompressor.decompress(stored, HEADER_LENGTH, value, 0, originalLength);
+        } else {
+            long result = Zstd.decompressByteArray(value, 0, originalLength,
+                                                   stored, HEADER_LENGTH, stored.length - HEADER_LENGTH);
+            if (Zstd.isError(result)) {
+                throw new IllegalStateException("Zstd decompression failed :: " + Zstd.getErrorName(result));
+            }
+        }
+        decompressTimers.get(algorithm).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return value;
+    }
+
+    private DistributionSummary ratio(String cacheName, CompressionAlgorithm algorithm) {
+
+        String name = cacheName + ':' + algorithm.name();
+        DistributionSummary ratio = ratios.get(name);
+        if (ratio != null) {
+            return ratio;
+        }
+        return ratios.computeIfAbsent(name, ignored -> DistributionSummary.builder("cache.compression.ratio")
+                .tag("cache", cacheName)
+                .tag("algorithm", algorithm.name())
+                .register(meterRegistry));
+    }
+
+    private Timer timer(CompressionAlgorithm algorithm, String operation) {
+        return Timer.builder("cache.compression.time")
+                .tag("algorithm", algorithm.name())
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.srilaxmi.cache.codec;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Encodings a cached value can be stored in. The id is written right after the format marker of every binary value,
+ * JSON values are stored without a marker so that data written before the codec registry existed stays readable.
+ */
+@Getter
+@AllArgsConstructor
+public enum ValueFormat {
+
+    JSON((byte) 0),
+    SMILE((byte) 1),
+    CBOR((byte) 2);
+
+    private final byte id;
+
+    public static ValueFormat fromId(byte id) {
+        for (ValueFormat format : values()) {
+            if (format.id == id) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown value format id " + id);
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.srilaxmi.cache.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Storage behind ReactiveRedisCache, see CacheBackend. {@code type} is either {@code redis} (the default) or
+ * {@code off-heap}, an in-process store for single node deployments which do not run redis.
+ *
+ * LocalCache and RedisCache always use redis, whatever the type.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.backend")
+public class BackendProperties {
+
+    private String type = "redis";
+
+    private OffHeap offHeap = new OffHeap();
+
+    @Data
+    public static class OffHeap {
+
+        // Direct memory reserved by every set, and again by the native lists of list sets; the oldest entries are
+        // evicted once it is full
+        private long maxBytesPerSet = 64L * 1024 * 1024;
+
+        // Independently locked segments per set (rounded up to a power of two), each holding an equal share of memory
+        private int segments = 16;
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.srilaxmi.cache.configuration;
+
+import com.github.srilaxmi.cache.codec.ValueFormat;
+import com.github.srilaxmi.cache.constants.EntityCacheName;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encoding used for new writes, per redis set and per local entity cache.
+ * Reads always follow the format marker of the stored value, so the format of a cache can be changed at any time.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.codec")
+public class CodecProperties {
+
+    private ValueFormat defaultFormat = ValueFormat.JSON;
+
+    private Map<String, ValueFormat> sets = new HashMap<>();
+
+    private Map<EntityCacheName, ValueFormat> entities = new HashMap<>();
+}
@@ -0,0 +1,38 @@
+package com.github.srilaxmi.cache.configuration;
+
+import com.github.srilaxmi.cache.codec.CompressionAlgorithm;
+import com.github.srilaxmi.cache.constants.EntityCacheName;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Value compression per redis set and per local entity cache. Only encoded values of at least {@code threshold}
+ * bytes are compressed; smaller ones are stored as they are. Compressed values are self-describing, so compression
+ * can be switched on or off for a cache without touching the existing entries.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.compression")
+public class CompressionProperties {
+
+    private Settings defaults = new Settings();
+
+    private Map<String, Settings> sets = new HashMap<>();
+
+    private Map<EntityCacheName, Settings> entities = new HashMap<>();
+
+    @Data
+    public static class Settings {
+
+        private CompressionAlgorithm algorithm = CompressionAlgorithm.NONE;
+
+        private int threshold = 16 * 1024;
+
+        // Only used by ZSTD
+        private int level = 3;
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.srilaxmi.cache.configuration;
 
 
+import com.github.srilaxmi.cache.backend.EntryTooLargeException;
 import com.github.srilaxmi.cache.dto.ApiResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -19,6 +20,8 @@ public class CustomExceptionHandler {
 
     private static final String INVALID_REQUEST_EXCEPTION = "INVALID REQUEST EXCEPTION :: ";
 
+    private static final String ENTRY_TOO_LARGE_EXCEPTION = "ENTRY TOO LARGE EXCEPTION :: {}";
+
     @ExceptionHandler(value = {
             ServerWebInputException.class
     })
@@ -29,6 +32,15 @@ public class CustomExceptionHandler {
         return ApiResponse.error("InvalidRequest");
     }
 
+    @ExceptionHandler(value = EntryTooLargeException.class)
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    public ApiResponse<String> handleEntryTooLargeException(EntryTooLargeException e) {
+
+        // A client error like any other, the stack trace tells nothing more than the message
+        log.warn(ENTRY_TOO_LARGE_EXCEPTION, e.getMessage());
+        return ApiResponse.error("EntryTooLarge");
+    }
+
     @ExceptionHandler(value = NullPointerException.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ApiResponse<String> handleNullPointerException(Exception e) {
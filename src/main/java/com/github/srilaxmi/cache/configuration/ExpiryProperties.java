@@ -0,0 +1,68 @@
+package com.github.srilaxmi.cache.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Expiring sets served by ReactiveRedisCache. Only the sets listed under {@code sets} support expiry: with the redis
+ * backend they are stored as redisson map caches, whose entries carry their own expiry and cannot be read as a plain
+ * hash, so a set must stay listed here for as long as it holds data. The off-heap backend supports the ttl only.
+ *
+ * Every put into a listed set uses the ttl and max idle time given with the put, or the ones configured for the set.
+ * The ttl is shortened by a random share of up to {@code jitter}, so that entries loaded together by a batch job
+ * expire spread out over time rather than all at once.
+ *
+ * Entries expiring in redis are not published to the near cache, which keeps serving them until its own
+ * expire-after-write; keep that shorter than the ttl for sets that have both.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.expiry")
+public class ExpiryProperties {
+
+    private Map<String, Settings> sets = new HashMap<>();
+
+    public boolean isExpiring(String set) {
+        return sets.containsKey(set);
+    }
+
+    public Settings getSettings(String set) {
+        return sets.get(set);
+    }
+
+    @Data
+    public static class Settings {
+
+        // Entries older than this expire, zero keeps them until they are deleted
+        private Duration ttl = Duration.ZERO;
+
+        // Entries not read for this long expire, zero disables it
+        private Duration maxIdle = Duration.ZERO;
+
+        // Largest share of the ttl randomly taken off every entry's ttl, between 0 and 1
+        private double jitter = 0.1;
+
+        /**
+         * Returns the ttl in millis to apply to one entry, with jitter, or 0 when the entry should not expire.
+         */
+        public long jitteredTtlMillis(Duration requested) {
+
+            long ttl = (requested != null ? requested : this.ttl).toMillis();
+            if (ttl <= 0 || jitter <= 0) {
+                return Math.max(0, ttl);
+            }
+            double share = ThreadLocalRandom.current().nextDouble() * Math.min(1.0, jitter);
+            return Math.max(1, ttl - (long) (ttl * share));
+        }
+
+        public long maxIdleMillis(Duration requested) {
+            return Math.max(0, (requested != null ? requested : maxIdle).toMillis());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.srilaxmi.cache.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Hot-key and big-key tracking over the reads and writes of ReactiveRedisCache and LocalCache, see HotKeyTracker.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.hot-keys")
+public class HotKeyProperties {
+
+    private boolean enabled = true;
+
+    // Number of hottest and of biggest keys reported
+    private int topK = 20;
+
+    // Only one in this many accesses is counted, reported counts are scaled back up
+    private int sampleRate = 16;
+
+    // Counters per row of the count-min sketch (rounded up to a power of two) and number of rows
+    private int sketchWidth = 4096;
+    private int sketchDepth = 4;
+
+    // All counts are halved this often, so that the ranking follows the recent traffic
+    private Duration decayInterval = Duration.ofMinutes(1);
+
+    // Values smaller than this are never reported as big keys
+    private int bigKeyMinBytes = 256 * 1024;
+}
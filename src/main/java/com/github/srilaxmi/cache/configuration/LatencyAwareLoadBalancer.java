@@ -0,0 +1,44 @@
+package com.github.srilaxmi.cache.configuration;
+
+import com.github.srilaxmi.cache.metrics.NodeLatencies;
+import org.redisson.connection.ClientConnectionsEntry;
+import org.redisson.connection.balancer.LoadBalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Redisson load balancer of the LOWEST_LATENCY read policy. Picks two of the candidate nodes at random and takes the
+ * one with the lower ping latency, which keeps the reads off slow nodes without piling all of them onto the single
+ * fastest one.
+ */
+public class LatencyAwareLoadBalancer implements LoadBalancer {
+
+    private final NodeLatencies nodeLatencies;
+
+    public LatencyAwareLoadBalancer(NodeLatencies nodeLatencies) {
+        this.nodeLatencies = nodeLatencies;
+    }
+
+    @Override
+    public ClientConnectionsEntry getEntry(List<ClientConnectionsEntry> clientsCopy) {
+
+        int size = clientsCopy.size();
+        if (size == 1) {
+            return clientsCopy.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        ClientConnectionsEntry a = clientsCopy.get(first);
+        ClientConnectionsEntry b = clientsCopy.get(second);
+        return latencyOf(a) <= latencyOf(b) ? a : b;
+    }
+
+    private long latencyOf(ClientConnectionsEntry entry) {
+        return nodeLatencies.getLatency(entry.getClient().getAddr());
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.srilaxmi.cache.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sets of ReactiveRedisCache holding lists of documents that may grow large. Lists of such a set with at least
+ * {@code native-threshold} documents are stored as a native list of the backend, one element per document (a redis
+ * list with the redis backend), which can be read by range, appended to and counted without touching the rest of it.
+ * Shorter lists keep the single-value format of all the other sets.
+ *
+ * Native lists are stored apart from the values of the set and are part of neither its scan nor its size, with both
+ * backends. They take the ttl of expiring sets but no max idle time.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.lists")
+public class ListProperties {
+
+    private Map<String, Settings> sets = new HashMap<>();
+
+    public boolean isListSet(String set) {
+        return sets.containsKey(set);
+    }
+
+    public Settings getSettings(String set) {
+        return sets.get(set);
+    }
+
+    @Data
+    public static class Settings {
+
+        // Lists of at least this many documents are stored as native lists, shorter ones as a single value; at least 1
+        private int nativeThreshold = 1000;
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.srilaxmi.cache.configuration;
+
+import com.github.srilaxmi.cache.constants.EntityCacheName;
+import lombok.Data;
+import org.redisson.api.LocalCachedMapOptions;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of the local caches managed by LocalCacheManager, per EntityCacheName. Caches without an entry use
+ * {@code defaults}; an entry replaces the defaults as a whole, so unset fields of an entry fall back to the values
+ * below rather than to {@code defaults}.
+ *
+ * The RLocalCachedMap settings (size, expiry, eviction, sync and reconnection) are applied when a cache is created.
+ *
+ * {@code refresh} sizes the executor shared by all caches for refresh-ahead reloads.
+ *
+ * {@code snapshot} controls the warm-start snapshots written by LocalCacheManager. It must be enabled on all instances
+ * writing to the caches, since only their writes invalidate the snapshots taken elsewhere.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.local")
+public class LocalCacheProperties {
+
+    private Settings defaults = new Settings();
+
+    private Map<EntityCacheName, Settings> entities = new HashMap<>();
+
+    private Refresh refresh = new Refresh();
+
+    private Snapshot snapshot = new Snapshot();
+
+    public Settings getSettings(EntityCacheName entityCacheName) {
+        return entities.getOrDefault(entityCacheName, defaults);
+    }
+
+    @Data
+    public static class Settings {
+
+        // Maximum number of entries in the local copy of the map, 0 means unbounded
+        private int cacheSize = 100;
+
+        // Local entries not read for this long are dropped, zero disables it
+        private Duration maxIdle = Duration.ZERO;
+
+        // Local entries older than this are dropped, zero disables it
+        private Duration timeToLive = Duration.ZERO;
+
+        private LocalCachedMapOptions.EvictionPolicy evictionPolicy = LocalCachedMapOptions.EvictionPolicy.LRU;
+
+        private LocalCachedMapOptions.SyncStrategy syncStrategy = LocalCachedMapOptions.SyncStrategy.UPDATE;
+
+        private LocalCachedMapOptions.ReconnectionStrategy reconnectionStrategy = LocalCachedMapOptions.ReconnectionStrategy.NONE;
+
+        // Keep decoded objects next to the stored bytes, so that local hits skip deserialisation. The same object is
+        // handed to every caller, so only enable this for caches whose values are never modified after a get.
+        private boolean decodedTier = false;
+
+        private int decodedTierSize = 1000;
+
+        private Duration decodedTierExpireAfterWrite = Duration.ofMinutes(10);
+
+        // Serialise get(key, valueLoader) loads of a key across all instances with a redis lock
+        private boolean distributedLease = false;
+
+        // How long an instance waits for another instance's load before loading itself
+        private Duration leaseWait = Duration.ofSeconds(5);
+
+        // Upper bound on how long a lease is held, in case the holder dies while loading
+        private Duration leaseTime = Duration.ofSeconds(30);
+
+        // Entries older than this are reloaded in the background by get(key, valueLoader) while the cached value keeps
+        // being served, zero disables it. Keep it well below timeToLive, an entry which is gone cannot be served.
+        private Duration refreshAfter = Duration.ZERO;
+
+        // Keep the stored bytes of entries read from redis in direct memory as well, sized in bytes and evicted oldest
+        // first independently of cacheSize, so that a small heap copy can be backed by a much larger local tier
+        private boolean offHeapTier = false;
+
+        private long offHeapTierMaxBytes = 256L * 1024 * 1024;
+
+        private int offHeapTierSegments = 16;
+
+        // One in this many off-heap or snapshot hits of a key reads it through the map again, which brings it back into
+        // the heap copy; frequently read keys therefore return to the heap quickly while rarely read ones stay off-heap
+        private int offHeapTierPromoteRate = 8;
+    }
+
+    @Data
+    public static class Refresh {
+
+        // Threads running refresh-ahead reloads, shared by all caches
+        private int threads = 2;
+
+        // Reloads waiting for a thread; reloads beyond it are dropped and the cached value is served until it expires
+        private int queueSize = 100;
+    }
+
+    @Data
+    public static class Snapshot {
+
+        private boolean enabled = false;
+
+        // One file per cache is kept here, it must survive restarts (e.g. a persistent volume)
+        private String directory = "snapshots";
+
+        // How often the snapshots are written, they are also written on shutdown
+        private Duration interval = Duration.ofMinutes(5);
+
+        // Snapshots older than this are not restored, nor served beyond that age; the time-to-live of a cache caps it
+        private Duration maxAge = Duration.ofHours(1);
+
+        // Entries beyond this size are left out of a snapshot, a snapshot cannot exceed 2GB
+        private long maxBytesPerCache = 512L * 1024 * 1024;
+    }
+}
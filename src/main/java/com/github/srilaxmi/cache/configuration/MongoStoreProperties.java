@@ -0,0 +1,60 @@
+package com.github.srilaxmi.cache.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sets of ReactiveRedisCache backed by a mongo collection, see MongoStore. Sets which are not listed here are plain
+ * caches, filled and invalidated by their callers.
+ *
+ * A key of a set is the value of {@code key-field} in the collection. With {@code multiple} a key stands for all the
+ * documents having it, read and written as a list, otherwise for the single document having it. Sets of multiple
+ * documents need a key field other than {@code _id}, which is unique to every document.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.mongo")
+public class MongoStoreProperties {
+
+    private Map<String, Settings> sets = new HashMap<>();
+
+    public Settings getSettings(String set) {
+        return sets.get(set);
+    }
+
+    @Data
+    public static class Settings {
+
+        // Collection holding the documents of the set, the set name when empty
+        private String collection;
+
+        private String keyField = "_id";
+
+        private boolean multiple = false;
+
+        // Misses are loaded from the collection and written to the cache
+        private boolean readThrough = true;
+
+        // Puts are written to the collection in the background, in batches
+        private boolean writeBehind = false;
+
+        // Pending writes are flushed once this many keys are waiting, or every flush interval
+        private int flushSize = 500;
+
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        // Keys waiting to be written; puts of new keys beyond it wait for a flush
+        private int queueSize = 10000;
+
+        // A key whose write failed this many flushes is dropped, counted as cache.write-behind.dropped
+        private int maxAttempts = 5;
+
+        // Wait before the flush after a failed one, doubled with every failed flush in a row
+        private Duration retryBackoff = Duration.ofSeconds(1);
+    }
+}
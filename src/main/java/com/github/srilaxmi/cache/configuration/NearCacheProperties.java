@@ -0,0 +1,34 @@
+package com.github.srilaxmi.cache.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-process near cache in front of the redis sets served by ReactiveRedisCache. Only the sets listed under
+ * {@code sets} get a near cache, and every instance is expected to run with the same list so that writes from any
+ * instance publish invalidations for them.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.near-cache")
+public class NearCacheProperties {
+
+    private String invalidationTopic = "cache-mate:near-cache:invalidations";
+
+    private Map<String, Settings> sets = new HashMap<>();
+
+    @Data
+    public static class Settings {
+
+        // Upper bound on the stored bytes (keys and values) kept for the set on one instance
+        private long maxBytes = 64L * 1024 * 1024;
+
+        // Safety net for missed invalidations, e.g. while the topic is being re-subscribed
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+    }
+}
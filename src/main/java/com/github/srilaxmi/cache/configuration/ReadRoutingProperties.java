@@ -0,0 +1,84 @@
+package com.github.srilaxmi.cache.configuration;
+
+import com.github.srilaxmi.cache.constants.ReadPolicy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read routing, hedging and timeouts of the redis commands of ReactiveRedisCache, see CommandRouter. Sets listed under
+ * {@code sets} take all their settings from their own entry, the others use {@code defaults}.
+ *
+ * Every read policy other than ANY gets a redisson client of its own in cluster topology, with its own connection
+ * pools, created when a set first uses it.
+ *
+ * Hedging: once a read has been waiting for the {@code quantile} of the recent latencies of its command on the set,
+ * the same read is sent to a replica and the first answer wins. Timeouts: reads fail once they take {@code
+ * multiplier} times the {@code quantile} of the recent latencies, kept between {@code min} and {@code max}; until
+ * enough latencies have been seen, {@code max} applies. Latencies are estimated per command and size of the read,
+ * so a bulk read is timed against reads of a similar size. Writes keep the {@code redis.timeout} of the client.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.read-routing")
+public class ReadRoutingProperties {
+
+    private Settings defaults = new Settings();
+
+    private Map<String, Settings> sets = new HashMap<>();
+
+    // Latencies are estimated over windows of this length, from the last complete window
+    private Duration latencyWindow = Duration.ofSeconds(10);
+
+    // Fewest latencies in a window to estimate quantiles from
+    private int minSamples = 100;
+
+    // Sets whose latencies are kept; beyond it, the least recently read sets start over from the max timeout
+    private int maxTrackedSets = 1000;
+
+    // How often every cluster node is pinged to rank the nodes for LOWEST_LATENCY
+    private Duration nodePingInterval = Duration.ofSeconds(1);
+
+    public Settings getSettings(String set) {
+        return sets.getOrDefault(set, defaults);
+    }
+
+    @Data
+    public static class Settings {
+
+        private ReadPolicy policy = ReadPolicy.ANY;
+
+        private Hedge hedge = new Hedge();
+
+        private Timeout timeout = new Timeout();
+    }
+
+    @Data
+    public static class Hedge {
+
+        private boolean enabled = false;
+
+        private double quantile = 0.95;
+
+        // Lower bound of the hedge delay, so that fast sets are not read twice on every jitter
+        private Duration minDelay = Duration.ofMillis(1);
+    }
+
+    @Data
+    public static class Timeout {
+
+        private boolean enabled = true;
+
+        private double quantile = 0.999;
+
+        private double multiplier = 4.0;
+
+        private Duration min = Duration.ofMillis(100);
+
+        private Duration max = Duration.ofSeconds(5);
+    }
+}
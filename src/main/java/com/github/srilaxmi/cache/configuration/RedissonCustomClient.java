@@ -1,9 +1,18 @@
 package com.github.srilaxmi.cache.configuration;
 
+import com.github.srilaxmi.cache.constants.ReadPolicy;
+import com.github.srilaxmi.cache.metrics.NodeLatencies;
+import com.github.srilaxmi.cache.metrics.RedisCommandMetrics;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.client.NettyHook;
 import org.redisson.client.codec.StringCodec;
 import org.redisson.api.RedissonClient;
+import org.redisson.api.redisnode.RedisNodes;
 import org.redisson.config.Config;
+import org.redisson.connection.ConnectionListener;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.apache.commons.lang3.StringUtils;
@@ -11,6 +20,23 @@ import org.redisson.Redisson;
 import org.redisson.config.ClusterServersConfig;
 import org.redisson.config.ReadMode;
 
+import javax.annotation.PreDestroy;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Owns the redisson clients of the application.
+ *
+ * Every client holds its own netty event loops and connection pools, so exactly one client is created per topology
+ * and shared by all the caches; it is created on first use and shut down with the application context.
+ *
+ * In cluster topology the shared client reads from masters and replicas alike. Sets with another read policy (see
+ * ReadRoutingProperties) read through a client of that policy, created the same way on first use.
+ */
 @Component
 @Slf4j
 public class RedissonCustomClient {
@@ -27,31 +53,180 @@ public class RedissonCustomClient {
     @Value("${redis.password}")
     private String password;
 
+    // Response timeout of a single command, in millis
+    @Value("${redis.timeout:60000}")
+    private int timeout;
+
+    @Value("${redis.connect-timeout:10000}")
+    private int connectTimeout;
+
+    // Unset keeps the previous defaults: 3 (the redisson default) for a single server and 10 for a cluster
+    @Value("${redis.retry-attempts:}")
+    private Integer retryAttempts;
+
+    @Value("${redis.retry-interval:1500}")
+    private int retryInterval;
+
+    // Connections per redis node (per master and per replica in cluster topology)
+    @Value("${redis.pool.size:5}")
+    private int poolSize;
+
+    @Value("${redis.pool.minimum-idle:1}")
+    private int poolMinimumIdle;
+
+    @Value("${redis.pool.subscription-size:50}")
+    private int subscriptionPoolSize;
+
+    @Value("${redis.pool.idle-timeout:10000}")
+    private int idleConnectionTimeout;
+
+    // Threads shared by all redisson objects of a client, 0 keeps the redisson default
+    @Value("${redis.threads:0}")
+    private int threads;
+
+    // Netty event loop threads of a client, 0 keeps the redisson default
+    @Value("${redis.netty-threads:0}")
+    private int nettyThreads;
+
+    @Autowired
+    private RedisCommandMetrics redisCommandMetrics;
+
+    @Autowired
+    private NodeLatencies nodeLatencies;
+
+    @Autowired
+    private ReadRoutingProperties readRoutingProperties;
+
+    private final Map<String, RedissonClient> clients = new ConcurrentHashMap<>();
+
+    // Run when the shared client gets its connection to a node back, see addReconnectListener
+    private final List<Runnable> reconnectListeners = new CopyOnWriteArrayList<>();
+
+    // Nodes the shared client has lost its connection to
+    private final Set<InetSocketAddress> disconnectedNodes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Returns the shared client of the configured topology.
+     */
     public RedissonClient getRedissonClient() {
+        return getRedissonClient(topology);
+    }
+
+    /**
+     * Returns the shared client of the given topology, creating it on first use.
+     */
+    public RedissonClient getRedissonClient(String topology) {
+        return clients.computeIfAbsent(topology, name -> createRedissonClient(name, ReadPolicy.ANY));
+    }
+
+    /**
+     * Returns the client reading with the given policy, the shared client for ANY and outside of cluster topology.
+     */
+    public RedissonClient getRedissonClient(ReadPolicy readPolicy) {
+
+        if (readPolicy == ReadPolicy.ANY || !topology.equals("cluster")) {
+            return getRedissonClient();
+        }
+        RedissonClient client = clients.computeIfAbsent(topology + ":" + readPolicy.name().toLowerCase(),
+                                                        name -> createRedissonClient(topology, readPolicy));
+        if (readPolicy == ReadPolicy.LOWEST_LATENCY) {
+            nodeLatencies.start(getRedissonClient(), readRoutingProperties.getNodePingInterval());
+        }
+        return client;
+    }
+
+    /**
+     * Whether reads can be served by another node than the master of their key: only in cluster topology with replicas.
+     */
+    public boolean hasReplicas() {
+
+        return topology.equals("cluster") && !getRedissonClient().getRedisNodes(RedisNodes.CLUSTER).getSlaves().isEmpty();
+    }
+
+    /**
+     * Runs the listener every time the shared client reconnects to a node it had lost, on a netty thread. Messages
+     * published while the connection was down, such as the invalidations of local cached maps, are lost.
+     */
+    public void addReconnectListener(Runnable listener) {
+        reconnectListeners.add(listener);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+
+        clients.forEach((name, client) -> {
+            log.info("REDISSON :: shutting down {} client", name);
+            client.shutdown();
+        });
+        clients.clear();
+    }
+
+    private RedissonClient createRedissonClient(String topology, ReadPolicy readPolicy) {
 
         Config config = new Config();
         StringCodec codec = new StringCodec();
         config.setCodec(codec);
+        if (threads > 0) {
+            config.setThreads(threads);
+        }
+        if (nettyThreads > 0) {
+            config.setNettyThreads(nettyThreads);
+        }
+        config.setNettyHook(new NettyHook() {
+            @Override
+            public void afterBoot(Bootstrap bootstrap) {
+            }
+
+            @Override
+            public void afterChannelInitialization(Channel channel) {
+                redisCommandMetrics.connectionOpened(topology);
+                channel.closeFuture().addListener(future -> redisCommandMetrics.connectionClosed(topology));
+            }
+        });
+
+        if (readPolicy == ReadPolicy.ANY) {
+            config.setConnectionListener(new ConnectionListener() {
+                @Override
+                public void onConnect(InetSocketAddress address) {
+                    if (disconnectedNodes.remove(address)) {
+                        log.info("REDISSON :: reconnected to {}", address);
+                        reconnectListeners.forEach(Runnable::run);
+                    }
+                }
+
+                @Override
+                public void onDisconnect(InetSocketAddress address) {
+                    log.warn("REDISSON :: disconnected from {}", address);
+                    disconnectedNodes.add(address);
+                }
+            });
+        }
 
         if (topology.equals("cluster")) {
-            setupRedisClusterConnection(config);
+            setupRedisClusterConnection(config, readPolicy);
         } else {
             setupRedisStandaloneConnection(config);
         }
 
+        redisCommandMetrics.registerPoolSize(topology, poolSize);
         return Redisson.create(config);
     }
 
     private void setupRedisStandaloneConnection(Config config) {
 
-        log.info("REDISSON :: connecting to single server");
+        log.info("REDISSON :: connecting to single server :: pool size :: {}", poolSize);
 
         config.useSingleServer()
                 .setAddress(uri)
-                .setTimeout(60000)
+                .setTimeout(timeout)
+                .setConnectTimeout(connectTimeout)
+                .setRetryAttempts(retryAttempts != null ? retryAttempts : 3)
+                .setRetryInterval(retryInterval)
+                .setIdleConnectionTimeout(idleConnectionTimeout)
                 .setSslEnableEndpointIdentification(ssl)
-                .setConnectionMinimumIdleSize(1)
-                .setConnectionPoolSize(5)
+                .setConnectionMinimumIdleSize(poolMinimumIdle)
+                .setConnectionPoolSize(poolSize)
+                .setSubscriptionConnectionPoolSize(subscriptionPoolSize)
                 .setDatabase(0);
         if (!StringUtils.isBlank(password)) {
             log.info("REDISSON :: Using password");
@@ -59,22 +234,44 @@ public class RedissonCustomClient {
         }
     }
 
-    private void setupRedisClusterConnection(Config config) {
+    private void setupRedisClusterConnection(Config config, ReadPolicy readPolicy) {
 
-        log.info("REDISSON :: connecting to cluster");
+        log.info("REDISSON :: connecting to cluster :: read policy :: {} :: pool size per node :: {}", readPolicy, poolSize);
 
         ClusterServersConfig clusterServersConfig = config.useClusterServers()
                 .addNodeAddress(uri)
-                .setTimeout(60000)
+                .setTimeout(timeout)
+                .setConnectTimeout(connectTimeout)
                 .setTcpNoDelay(true)
-                .setReadMode(ReadMode.MASTER_SLAVE)
+                .setReadMode(readModeOf(readPolicy))
                 .setKeepAlive(true)
                 .setSslEnableEndpointIdentification(ssl)
-                .setRetryAttempts(10);
+                .setRetryAttempts(retryAttempts != null ? retryAttempts : 10)
+                .setRetryInterval(retryInterval)
+                .setIdleConnectionTimeout(idleConnectionTimeout)
+                .setMasterConnectionMinimumIdleSize(poolMinimumIdle)
+                .setMasterConnectionPoolSize(poolSize)
+                .setSlaveConnectionMinimumIdleSize(poolMinimumIdle)
+                .setSlaveConnectionPoolSize(poolSize)
+                .setSubscriptionConnectionPoolSize(subscriptionPoolSize);
         if (!StringUtils.isBlank(password)) {
             clusterServersConfig.setPassword(password);
         }
+        if (readPolicy == ReadPolicy.LOWEST_LATENCY) {
+            clusterServersConfig.setLoadBalancer(new LatencyAwareLoadBalancer(nodeLatencies));
+        }
     }
 
-}
+    private static ReadMode readModeOf(ReadPolicy readPolicy) {
 
+        switch (readPolicy) {
+            case MASTER:
+                return ReadMode.MASTER;
+            case REPLICA_PREFERRED:
+                return ReadMode.SLAVE;
+            default:
+                return ReadMode.MASTER_SLAVE;
+        }
+    }
+
+}
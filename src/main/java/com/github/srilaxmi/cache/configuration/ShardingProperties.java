@@ -0,0 +1,46 @@
+package com.github.srilaxmi.cache.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sets of ReactiveRedisCache spread over several redis hashes, see ShardRouter. In a redis cluster every hash lives on
+ * one slot, so a large set stored as a single hash loads a single master; its shards land on different slots and
+ * therefore on different masters. Only the redis backend shards, and expiring sets cannot be sharded.
+ *
+ * {@code shards} is the shard count a set starts with. Once a set has been used its shard count is kept in redis, and
+ * changing it afterwards goes through the resharding of the {@code shards} actuator endpoint; a different configured
+ * count is only logged.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.sharding")
+public class ShardingProperties {
+
+    private Map<String, Settings> sets = new HashMap<>();
+
+    // How long an instance keeps using the shard layout it has read, i.e. how late it notices a resharding
+    private Duration refreshInterval = Duration.ofSeconds(5);
+
+    // Entries moved per batch while resharding
+    private int migrationBatchSize = 500;
+
+    public boolean isSharded(String set) {
+        return sets.containsKey(set);
+    }
+
+    public Settings getSettings(String set) {
+        return sets.get(set);
+    }
+
+    @Data
+    public static class Settings {
+
+        private int shards = 8;
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.srilaxmi.cache.constants;
+
+/**
+ * Outcome of a single key in a bulk write or bulk delete.
+ */
+public enum BulkKeyStatus {
+
+    CREATED,
+    UPDATED,
+    DELETED,
+    NOT_FOUND,
+    FAILED
+}
@@ -4,7 +4,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
-import javax.swing.text.Document;
+import org.bson.Document;
 
 @Getter
 @AllArgsConstructor
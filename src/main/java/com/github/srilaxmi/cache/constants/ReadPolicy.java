@@ -0,0 +1,16 @@
+package com.github.srilaxmi.cache.constants;
+
+/**
+ * Which redis nodes serve the reads of a set in cluster topology, see ReadRoutingProperties. Writes always go to the
+ * masters, and in standalone topology everything goes to the single server.
+ */
+public enum ReadPolicy {
+
+    // Masters and replicas in turn
+    ANY,
+    MASTER,
+    // Replicas, the master only when a shard has none available
+    REPLICA_PREFERRED,
+    // Masters and replicas, favouring the nodes with the lowest ping latency
+    LOWEST_LATENCY
+}
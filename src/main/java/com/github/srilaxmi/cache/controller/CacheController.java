@@ -2,14 +2,24 @@ package com.github.srilaxmi.cache.controller;
 
 import com.github.srilaxmi.cache.service.ReactiveRedisCache;
 import com.github.srilaxmi.cache.dto.ApiResponse;
+import com.github.srilaxmi.cache.dto.CacheEntry;
+import com.github.srilaxmi.cache.dto.KeyStatus;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @RestController
@@ -19,6 +29,10 @@ public class CacheController {
     @Autowired
     private ReactiveRedisCache reactiveRedisCache;
 
+    // Upper bound on the number of keys accepted by the non-streaming bulk endpoints
+    @Value("${cache.bulk.max-keys:10000}")
+    private int bulkMaxKeys;
+
     @GetMapping("/{setName}/data/{keyName}")
     public Mono<ApiResponse<Object>> getDataFromRedis(
             @PathVariable String setName,
@@ -28,6 +42,20 @@ public class CacheController {
         return ApiResponse.ok(reactiveRedisCache.get(setName, keyName, Object.class));
     }
 
+    /**
+     * Same response as {@link #getDataFromRedis(String, String)}, but the stored JSON is written to the response as it
+     * is instead of being parsed into objects and serialised again. Works for single values and lists alike.
+     */
+    @GetMapping(value = "/{setName}/raw-data/{keyName}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<DataBuffer> getRawDataFromRedis(
+            @PathVariable String setName,
+            @PathVariable String keyName,
+            ServerHttpResponse response
+    ) {
+
+        return ApiResponse.okRaw(reactiveRedisCache.getJson(setName, keyName), response.bufferFactory());
+    }
+
     @GetMapping("/{setName}/list-data/{keyName}")
     public Mono<ApiResponse<List<Document>>> getMultiDataFromRedis(
             @PathVariable String setName,
@@ -37,6 +65,78 @@ public class CacheController {
         return ApiResponse.ok(reactiveRedisCache.getToList(setName, keyName));
     }
 
+    /**
+     * Paged read of a list: up to limit documents starting at offset. Large lists of list sets (see cache.lists) are
+     * read without loading the rest of the list.
+     */
+    @GetMapping("/{setName}/list-data/{keyName}/range")
+    public Mono<ApiResponse<List<Document>>> getListRangeFromRedis(
+            @PathVariable String setName,
+            @PathVariable String keyName,
+            @RequestParam(defaultValue = "0") long offset,
+            @RequestParam(defaultValue = "100") int limit
+    ) {
+
+        if (offset < 0 || offset > Integer.MAX_VALUE) {
+            throw new ServerWebInputException("offset must be between 0 and " + Integer.MAX_VALUE);
+        }
+        if (limit <= 0 || limit > bulkMaxKeys) {
+            throw new ServerWebInputException("limit must be between 1 and " + bulkMaxKeys);
+        }
+        return ApiResponse.ok(reactiveRedisCache.getListRange(setName, keyName, offset, limit));
+    }
+
+    @GetMapping("/{setName}/list-data/{keyName}/length")
+    public Mono<ApiResponse<Long>> getListLengthFromRedis(
+            @PathVariable String setName,
+            @PathVariable String keyName
+    ) {
+
+        return ApiResponse.ok(reactiveRedisCache.getListLength(setName, keyName));
+    }
+
+    @PostMapping("/{setName}/bulk/get")
+    public Mono<ApiResponse<Map<String, Object>>> getBulkDataFromRedis(
+            @PathVariable String setName,
+            @RequestBody Set<String> keyNames
+    ) {
+
+        validateBulkSize(keyNames.size());
+        return ApiResponse.ok(reactiveRedisCache.getAll(setName, keyNames, Object.class)
+                                      .collectMap(CacheEntry::getKey, CacheEntry::getData));
+    }
+
+    /**
+     * Streaming variant of the bulk read. The key list is consumed as it arrives and every entry is written as one
+     * NDJSON line as soon as its chunk has been fetched, so there is no limit on the number of keys.
+     */
+    @PostMapping(value = "/{setName}/bulk/get/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<CacheEntry<Object>> streamBulkDataFromRedis(
+            @PathVariable String setName,
+            @RequestBody Flux<String> keyNames
+    ) {
+
+        return reactiveRedisCache.getAll(setName, keyNames, Object.class);
+    }
+
+    /**
+     * Streams the entries of a whole set as NDJSON, optionally only the keys matching a glob-style pattern (e.g.
+     * {@code user:*}). The set is read page by page as the client consumes the response, so exports of any size run
+     * in constant memory; count is the page size.
+     */
+    @GetMapping(value = "/{setName}/scan", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<CacheEntry<Object>> scanDataFromRedis(
+            @PathVariable String setName,
+            @RequestParam(required = false) String match,
+            @RequestParam(required = false) Integer count
+    ) {
+
+        if (count != null && (count <= 0 || count > bulkMaxKeys)) {
+            throw new ServerWebInputException("count must be between 1 and " + bulkMaxKeys);
+        }
+        return reactiveRedisCache.scan(setName, match, count, Object.class);
+    }
+
     @GetMapping("/{setName}/count")
     public Mono<ApiResponse<Integer>> getDataCountFromRedis(
             @PathVariable String setName
@@ -45,25 +145,94 @@ public class CacheController {
         return ApiResponse.ok(reactiveRedisCache.getKeysCount(setName));
     }
 
+    /**
+     * ttl and maxIdle are ISO-8601 durations (e.g. PT1H) and are only accepted for expiring sets; when left out the
+     * expiry configured for the set applies.
+     */
     @PostMapping("/{setName}/data/{keyName}")
     public Mono<ApiResponse<Boolean>> pushDataToRedis(
             @PathVariable String setName,
             @PathVariable String keyName,
+            @RequestParam(required = false) Duration ttl,
+            @RequestParam(required = false) Duration maxIdle,
             @RequestBody Document doc
     ) {
 
-        return ApiResponse.ok(reactiveRedisCache.put(setName, keyName, doc));
+        validateExpiry(setName, ttl, maxIdle);
+        return ApiResponse.ok(reactiveRedisCache.put(setName, keyName, doc, ttl, maxIdle));
     }
 
     @PostMapping("/{setName}/list-data/{keyName}")
     public Mono<ApiResponse<Boolean>> pushListDataToRedis(
             @PathVariable String setName,
             @PathVariable String keyName,
+            @RequestParam(required = false) Duration ttl,
+            @RequestParam(required = false) Duration maxIdle,
             @RequestBody List<Document> doc
     ) {
 
-        return ApiResponse.ok(reactiveRedisCache.putFromList(setName, Map.of(keyName, doc)));
+        validateExpiry(setName, ttl, maxIdle);
+        return ApiResponse.ok(reactiveRedisCache.putFromList(setName, Map.of(keyName, doc), ttl, maxIdle));
+
+    }
+
+    /**
+     * Appends documents to the end of a list, creating it when absent, and returns the new length of the list.
+     */
+    @PostMapping("/{setName}/list-data/{keyName}/append")
+    public Mono<ApiResponse<Long>> appendListDataToRedis(
+            @PathVariable String setName,
+            @PathVariable String keyName,
+            @RequestBody List<Document> docs
+    ) {
+
+        validateBulkSize(docs.size());
+        return ApiResponse.ok(reactiveRedisCache.appendToList(setName, keyName, docs));
+    }
+
+    /**
+     * Bulk write. The body may be a JSON array or NDJSON of {key, data} entries; it is consumed as a stream and
+     * written in pipelined chunks, and one status line is returned per key as soon as its chunk is acknowledged.
+     */
+    @PostMapping(value = "/{setName}/bulk/put", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<KeyStatus> pushBulkDataToRedis(
+            @PathVariable String setName,
+            @RequestParam(required = false) Duration ttl,
+            @RequestParam(required = false) Duration maxIdle,
+            @RequestBody Flux<CacheEntry<Document>> entries
+    ) {
+
+        validateExpiry(setName, ttl, maxIdle);
+        return reactiveRedisCache.putAll(setName, entries, ttl, maxIdle);
+    }
+
+    @PostMapping(value = "/{setName}/bulk/delete", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<KeyStatus> deleteBulkDataFromRedis(
+            @PathVariable String setName,
+            @RequestBody Flux<String> keyNames
+    ) {
+
+        return reactiveRedisCache.deleteAll(setName, keyNames);
+    }
+
+    private void validateBulkSize(int size) {
+
+        if (size > bulkMaxKeys) {
+            throw new ServerWebInputException("Bulk request has " + size + " keys, maximum allowed is " + bulkMaxKeys);
+        }
+    }
 
+    private void validateExpiry(String setName, Duration ttl, Duration maxIdle) {
+
+        if ((ttl != null || maxIdle != null) && !reactiveRedisCache.isExpiring(setName)) {
+            throw new ServerWebInputException("Set " + setName + " does not support expiry, it is not listed under cache.expiry.sets");
+        }
+        if ((ttl != null && ttl.isNegative()) || (maxIdle != null && maxIdle.isNegative())) {
+            throw new ServerWebInputException("ttl and maxIdle must not be negative");
+        }
+        if (maxIdle != null && !maxIdle.isZero() && !reactiveRedisCache.supportsMaxIdle()) {
+            throw new ServerWebInputException("maxIdle is not supported by the configured cache backend");
+        }
     }
 
 }
@@ -5,10 +5,13 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.util.CollectionUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @Slf4j
@@ -18,6 +21,10 @@ import java.util.List;
 @NoArgsConstructor
 public class ApiResponse<T> {
 
+    // The serialised form of an ApiResponse around its data, as written by Jackson for the other endpoints
+    private static final byte[] RAW_PREFIX = "{\"message\":null,\"data\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RAW_SUFFIX = ",\"meta\":null}".getBytes(StandardCharsets.UTF_8);
+
     private String message;
     private T data;
     private ApiResponseMeta meta;
@@ -46,6 +53,20 @@ public class ApiResponse<T> {
                 );
     }
 
+    /**
+     * Wraps data that is already serialised as JSON in the ApiResponse envelope. The data bytes are handed to the
+     * response as they are, without being parsed or copied.
+     */
+    public static Flux<DataBuffer> okRaw(Mono<byte[]> jsonMono, DataBufferFactory bufferFactory) {
+
+        return jsonMono
+                .flatMapMany(json -> Flux.just(
+                        bufferFactory.wrap(RAW_PREFIX),
+                        bufferFactory.wrap(json),
+                        bufferFactory.wrap(RAW_SUFFIX)
+                ));
+    }
+
     public static <T> ApiResponse<T> ok(T data) {
 
         return ApiResponse
@@ -0,0 +1,16 @@
+package com.github.srilaxmi.cache.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheEntry<T> {
+
+    private String key;
+    private T data;
+}
@@ -0,0 +1,17 @@
+package com.github.srilaxmi.cache.dto;
+
+import com.github.srilaxmi.cache.constants.BulkKeyStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class KeyStatus {
+
+    private String key;
+    private BulkKeyStatus status;
+}
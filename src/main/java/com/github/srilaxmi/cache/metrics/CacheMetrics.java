@@ -0,0 +1,185 @@
+package com.github.srilaxmi.cache.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operation level metrics of all the caches, tagged by cache type (local, redis or reactive), by cache or set name and
+ * by operation:
+ *
+ * - cache.hits / cache.misses: reads that found / did not find the key
+ * - cache.errors: operations that failed
+ * - cache.latency: duration of every operation, published as a percentile histogram so p99 can be aggregated across
+ *   instances
+ * - cache.serialization.time / cache.payload.size: time spent encoding and decoding values and the size of the bytes
+ *   written or read
+ *
+ * Counters and timers are backed by striped adders, so recording stays cheap when many threads hit the same cache.
+ * Meters are registered once per cache and operation and kept here, the hot path never goes through the registry.
+ */
+@Component
+public class CacheMetrics {
+
+    public static final String LOCAL = "local";
+    public static final String REDIS = "redis";
+    public static final String REACTIVE = "reactive";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    private final Map<String, SerializationMetrics> serializations = new ConcurrentHashMap<>();
+
+    public CacheMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public MeterRegistry getMeterRegistry() {
+        return meterRegistry;
+    }
+
+    public OperationMetrics operation(String type, String cache, String operation) {
+
+        String name = type + ':' + cache + ':' + operation;
+        OperationMetrics metrics = operations.get(name);
+        if (metrics != null) {
+            return metrics;
+        }
+        return operations.computeIfAbsent(name, ignored -> new OperationMetrics(meterRegistry, type, cache, operation));
+    }
+
+    public SerializationMetrics serialization(String cache, String operation) {
+
+        String name = cache + ':' + operation;
+        SerializationMetrics metrics = serializations.get(name);
+        if (metrics != null) {
+            return metrics;
+        }
+        return serializations.computeIfAbsent(name, ignored -> new SerializationMetrics(meterRegistry, cache, operation));
+    }
+
+    /**
+     * Times a read, counting a hit when it emits a value and a miss when it completes empty.
+     */
+    public <T> Mono<T> recordRead(String type, String cache, String operation, Mono<T> read) {
+
+        OperationMetrics metrics = operation(type, cache, operation);
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return read
+                    .doOnSuccess(value -> {
+                        if (value == null) {
+                            metrics.miss(start);
+                        } else {
+                            metrics.hit(start);
+                        }
+                    })
+                    .doOnError(e -> metrics.error(start));
+        });
+    }
+
+    /**
+     * Times an operation which is not a read, counting it as an error when it fails.
+     */
+    public <T> Mono<T> record(String type, String cache, String operation, Mono<T> call) {
+
+        OperationMetrics metrics = operation(type, cache, operation);
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                    .doOnSuccess(value -> metrics.success(start))
+                    .doOnError(e -> metrics.error(start));
+        });
+    }
+
+    public static final class OperationMetrics {
+
+        private final Counter hits;
+        private final Counter misses;
+        private final Counter errors;
+        private final Timer latency;
+
+        private OperationMetrics(MeterRegistry meterRegistry, String type, String cache, String operation) {
+            this.hits = Counter.builder("cache.hits")
+                    .tags("type", type, "cache", cache, "operation", operation)
+                    .register(meterRegistry);
+            this.misses = Counter.builder("cache.misses")
+                    .tags("type", type, "cache", cache, "operation", operation)
+                    .register(meterRegistry);
+            this.errors = Counter.builder("cache.errors")
+                    .tags("type", type, "cache", cache, "operation", operation)
+                    .register(meterRegistry);
+            this.latency = Timer.builder("cache.latency")
+                    .tags("type", type, "cache", cache, "operation", operation)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+
+        public void hit(long startNanos) {
+            hits.increment();
+            success(startNanos);
+        }
+
+        public void miss(long startNanos) {
+            misses.increment();
+            success(startNanos);
+        }
+
+        /**
+         * Records a multi-key read, taking one latency sample for the whole call.
+         */
+        public void bulk(long startNanos, int hitCount, int missCount) {
+            hits.increment(hitCount);
+            misses.increment(missCount);
+            success(startNanos);
+        }
+
+        public void success(long startNanos) {
+            latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void error(long startNanos) {
+            errors.increment();
+            success(startNanos);
+        }
+
+        public long getHits() {
+            return (long) hits.count();
+        }
+
+        public long getMisses() {
+            return (long) misses.count();
+        }
+    }
+
+    public static final class SerializationMetrics {
+
+        private final Timer time;
+        private final DistributionSummary size;
+
+        private SerializationMetrics(MeterRegistry meterRegistry, String cache, String operation) {
+            this.time = Timer.builder("cache.serialization.time")
+                    .tags("cache", cache, "operation", operation)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.size = DistributionSummary.builder("cache.payload.size")
+                    .tags("cache", cache, "operation", operation)
+                    .baseUnit("bytes")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+
+        public void record(long startNanos, int bytes) {
+            time.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            size.record(bytes);
+        }
+    }
+}
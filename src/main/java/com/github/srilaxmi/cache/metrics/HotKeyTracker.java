@@ -0,0 +1,284 @@
+package com.github.srilaxmi.cache.metrics;
+
+import com.github.srilaxmi.cache.configuration.HotKeyProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streaming detection of the keys that overload a redis shard, either because they are accessed far more often than
+ * the rest (hot keys) or because their values are huge (big keys).
+ *
+ * Access frequencies are estimated with a count-min sketch over a sample of the accesses, and the keys whose estimate
+ * is among the top K are kept aside together with it. Big keys are the top K values by stored size above
+ * {@code big-key-min-bytes}, found among the same sampled accesses and updated on any access once ranked. Both rankings are decayed periodically so that they follow the current traffic. Memory
+ * is bounded by the sketch size and K, whatever the number of distinct keys.
+ *
+ * The cost per access is a volatile read, a random number and a size histogram increment for unsampled accesses,
+ * plus a few counter increments for sampled ones. The ranking locks are only taken for sampled accesses of keys that
+ * make it into the top K, and for accesses of a ranked big key whose size has changed, so that a big key which is also
+ * hot does not take a global lock on every read.
+ */
+@Component
+public class HotKeyTracker {
+
+    private static final int SIZE_BUCKETS = 32;
+
+    private final HotKeyProperties properties;
+
+    private final CountMinSketch sketch;
+
+    private final Map<TrackedKey, Long> hotKeys = new HashMap<>();
+
+    // Written under its own lock, read without it to find the big keys whose size changed
+    private final Map<TrackedKey, Integer> bigKeys = new ConcurrentHashMap<>();
+
+    // Smallest estimate (resp. size) in the full top K, anything below it cannot get in
+    private volatile long hotKeyThreshold;
+    private volatile int bigKeyThreshold;
+
+    // Per cache count of values by power of two size bucket
+    private final Map<String, LongAdder[]> sizeHistograms = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextDecay;
+
+    public HotKeyTracker(HotKeyProperties properties) {
+        this.properties = properties;
+        this.sketch = new CountMinSketch(properties.getSketchWidth(), properties.getSketchDepth());
+        this.bigKeyThreshold = properties.getBigKeyMinBytes();
+        this.nextDecay = new AtomicLong(System.nanoTime() + properties.getDecayInterval().toNanos());
+    }
+
+    /**
+     * Records a read or write of a key. size is the number of stored bytes of the value, or -1 when unknown.
+     */
+    public void record(String cache, String key, int size) {
+
+        if (!properties.isEnabled()) {
+            return;
+        }
+        int sampleRate = properties.getSampleRate();
+        boolean sampled = sampleRate <= 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+        if (size >= 0) {
+            recordSize(cache, key, size, sampled);
+        }
+        if (!sampled) {
+            return;
+        }
+        decayIfDue();
+        long estimate = sketch.add(cache.hashCode() * 31 + key.hashCode());
+        if (estimate >= hotKeyThreshold) {
+            offerHotKey(new TrackedKey(cache, key), estimate);
+        }
+    }
+
+    /**
+     * The hottest keys, hottest first, with their estimated number of accesses since the counts were last decayed.
+     */
+    public List<KeyStats> getHotKeys() {
+
+        List<KeyStats> stats = new ArrayList<>();
+        long scale = Math.max(1, properties.getSampleRate());
+        synchronized (hotKeys) {
+            hotKeys.forEach((key, estimate) -> stats.add(
+                    new KeyStats(key.getCache(), key.getKey(), estimate * scale, null)));
+        }
+        stats.sort(Comparator.comparing(KeyStats::getAccesses).reversed());
+        return stats;
+    }
+
+    /**
+     * The biggest values seen, biggest first.
+     */
+    public List<KeyStats> getBigKeys() {
+
+        List<KeyStats> stats = new ArrayList<>();
+        synchronized (bigKeys) {
+            bigKeys.forEach((key, size) -> stats.add(new KeyStats(key.getCache(), key.getKey(), null, size)));
+        }
+        stats.sort(Comparator.comparing(KeyStats::getBytes).reversed());
+        return stats;
+    }
+
+    /**
+     * Number of values seen per cache, by upper bound of their size in bytes. Empty buckets are left out.
+     */
+    public Map<String, Map<Long, Long>> getSizeHistograms() {
+
+        Map<String, Map<Long, Long>> histograms = new TreeMap<>();
+        sizeHistograms.forEach((cache, buckets) -> {
+            Map<Long, Long> histogram = new LinkedHashMap<>();
+            for (int bucket = 0; bucket < SIZE_BUCKETS; bucket++) {
+                long count = buckets[bucket].sum();
+                if (count > 0) {
+                    histogram.put(1L << bucket, count);
+                }
+            }
+            histograms.put(cache, histogram);
+        });
+        return histograms;
+    }
+
+    private void recordSize(String cache, String key, int size, boolean sampled) {
+
+        LongAdder[] buckets = sizeHistograms.get(cache);
+        if (buckets == null) {
+            buckets = sizeHistograms.computeIfAbsent(cache, ignored -> newBuckets());
+        }
+        buckets[Math.min(SIZE_BUCKETS - 1, 32 - Integer.numberOfLeadingZeros(Math.max(0, size - 1)))].increment();
+
+        if (size < bigKeyThreshold) {
+            return;
+        }
+        TrackedKey tracked = new TrackedKey(cache, key);
+        Integer recorded = bigKeys.get(tracked);
+        if (sampled ? recorded == null || recorded != size : recorded != null && recorded != size) {
+            offerBigKey(tracked, size);
+        }
+    }
+
+    private void offerHotKey(TrackedKey key, long estimate) {
+
+        synchronized (hotKeys) {
+            hotKeys.merge(key, estimate, Math::max);
+            hotKeyThreshold = trim(hotKeys, 0L);
+        }
+    }
+
+    private void offerBigKey(TrackedKey key, int size) {
+
+        synchronized (bigKeys) {
+            bigKeys.put(key, size);
+            bigKeyThreshold = Math.max(properties.getBigKeyMinBytes(), trim(bigKeys, 0));
+        }
+    }
+
+    /**
+     * Drops the smallest entries beyond the top K and returns the smallest value left once the ranking is full, or
+     * the given floor while it is not.
+     */
+    private <V extends Comparable<V>> V trim(Map<TrackedKey, V> ranking, V floor) {
+
+        int topK = properties.getTopK();
+        while (ranking.size() > topK) {
+            ranking.entrySet()
+                    .stream()
+                    .min(Map.Entry.comparingByValue())
+                    .ifPresent(min -> ranking.remove(min.getKey()));
+        }
+        if (ranking.size() < topK) {
+            return floor;
+        }
+        return ranking.values()
+                .stream()
+                .min(Comparator.naturalOrder())
+                .orElse(floor);
+    }
+
+    private void decayIfDue() {
+
+        long now = System.nanoTime();
+        long due = nextDecay.get();
+        if (now - due < 0 || !nextDecay.compareAndSet(due, now + properties.getDecayInterval().toNanos())) {
+            return;
+        }
+        sketch.halve();
+        synchronized (hotKeys) {
+            hotKeys.replaceAll((key, estimate) -> estimate / 2);
+            hotKeys.values().removeIf(estimate -> estimate == 0);
+            hotKeyThreshold = trim(hotKeys, 0L);
+        }
+        synchronized (bigKeys) {
+            // Big keys may have been deleted or shrunk since, let them be seen again
+            bigKeys.clear();
+            bigKeyThreshold = properties.getBigKeyMinBytes();
+        }
+    }
+
+    private static LongAdder[] newBuckets() {
+
+        LongAdder[] buckets = new LongAdder[SIZE_BUCKETS];
+        for (int i = 0; i < SIZE_BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+        return buckets;
+    }
+
+    /**
+     * Count-min sketch: every key increments one counter per row and its frequency is estimated by the smallest of
+     * them. Estimates can only be too high, by at most a small share of the total count.
+     */
+    private static final class CountMinSketch {
+
+        private final AtomicLongArray counters;
+        private final int depth;
+        private final int mask;
+
+        private CountMinSketch(int width, int depth) {
+            int rowWidth = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+            this.depth = Math.max(1, depth);
+            this.mask = rowWidth - 1;
+            this.counters = new AtomicLongArray(rowWidth * this.depth);
+        }
+
+        long add(int hash) {
+
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                int index = row * (mask + 1) + (mix(hash + row * 0x9E3779B9) & mask);
+                estimate = Math.min(estimate, counters.incrementAndGet(index));
+            }
+            return estimate;
+        }
+
+        void halve() {
+            for (int i = 0; i < counters.length(); i++) {
+                counters.set(i, counters.get(i) >>> 1);
+            }
+        }
+
+        // Murmur3 finalizer, spreads the key hash over all bits before it is masked
+        private static int mix(int hash) {
+            hash ^= hash >>> 16;
+            hash *= 0x85EBCA6B;
+            hash ^= hash >>> 13;
+            hash *= 0xC2B2AE35;
+            hash ^= hash >>> 16;
+            return hash;
+        }
+    }
+
+    @Getter
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class TrackedKey {
+
+        private final String cache;
+        private final String key;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class KeyStats {
+
+        private String cache;
+        private String key;
+        private Long accesses;
+        private Integer bytes;
+    }
+}
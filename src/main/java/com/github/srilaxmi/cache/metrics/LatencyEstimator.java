@@ -0,0 +1,103 @@
+package com.github.srilaxmi.cache.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cheap estimate of the latency quantiles of one command, for the hedge delays and timeouts of the CommandRouter.
+ *
+ * Latencies are counted in a histogram of logarithmic buckets, four per power of two of microseconds, so a quantile
+ * is off by at most a fifth. The histogram is started afresh every window and quantiles are read from the last
+ * complete window, which makes them follow changes in latency within two windows and costs one atomic increment per
+ * recorded latency.
+ */
+public class LatencyEstimator {
+
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = 40 * SUB_BUCKETS;
+
+    private final long windowNanos;
+
+    private final int minSamples;
+
+    private volatile AtomicLongArray current = new AtomicLongArray(BUCKETS);
+
+    // Counts of the last complete window, null until one is complete
+    private volatile long[] previous;
+
+    private volatile long previousTotal;
+
+    private volatile long windowStart = System.nanoTime();
+
+    public LatencyEstimator(long windowNanos, int minSamples) {
+        this.windowNanos = windowNanos;
+        this.minSamples = minSamples;
+    }
+
+    public void record(long nanos) {
+
+        long now = System.nanoTime();
+        if (now - windowStart > windowNanos) {
+            rotate(now);
+        }
+        current.incrementAndGet(bucketOf(nanos));
+    }
+
+    private synchronized void rotate(long now) {
+
+        if (now - windowStart <= windowNanos) {
+            return;
+        }
+        AtomicLongArray closed = current;
+        current = new AtomicLongArray(BUCKETS);
+        windowStart = now;
+
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = closed.get(i);
+            total += counts[i];
+        }
+        previous = counts;
+        previousTotal = total;
+    }
+
+    /**
+     * The given quantile of the latencies of the last window in nanos, or -1 when it had too few of them.
+     */
+    public long quantile(double quantile) {
+
+        long[] counts = previous;
+        long total = previousTotal;
+        if (counts == null || total < minSamples) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBoundNanos(i);
+            }
+        }
+        return upperBoundNanos(BUCKETS - 1);
+    }
+
+    private static int bucketOf(long nanos) {
+
+        long micros = Math.max(1, nanos / 1000);
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        // The two bits below the leading one pick the sub-bucket; 1 to 3 micros are counted exactly
+        int sub = exponent < 2 ? (int) (micros - (1L << exponent))
+                : (int) ((micros >>> (exponent - 2)) & (SUB_BUCKETS - 1));
+        return Math.min(BUCKETS - 1, exponent * SUB_BUCKETS + sub);
+    }
+
+    private static long upperBoundNanos(int bucket) {
+
+        int exponent = bucket / SUB_BUCKETS;
+        int sub = bucket % SUB_BUCKETS;
+        long lower = exponent < 2 ? (1L << exponent) + sub : (1L << exponent) + ((long) sub << (exponent - 2));
+        long width = exponent < 2 ? 1 : 1L << (exponent - 2);
+        return (lower + width) * 1000;
+    }
+}
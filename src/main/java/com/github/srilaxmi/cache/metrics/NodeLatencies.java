@@ -0,0 +1,120 @@
+package com.github.srilaxmi.cache.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.redisnode.RedisCluster;
+import org.redisson.api.redisnode.RedisNode;
+import org.redisson.api.redisnode.RedisNodes;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ping latency of every node of the redis cluster, smoothed over the last pings, used to send the reads of
+ * LOWEST_LATENCY sets to the fastest nodes. A node which does not answer a ping counts as taking the whole ping
+ * timeout. Published as {@code redis.node.latency} per node.
+ */
+@Slf4j
+@Component
+public class NodeLatencies {
+
+    // Weight of the newest ping in the smoothed latency
+    private static final double ALPHA = 0.3;
+
+    private static final long PING_TIMEOUT_MILLIS = 1000;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Smoothed latency in nanos, per node address
+    private final Map<String, AtomicLong> latencies = new ConcurrentHashMap<>();
+
+    private volatile Disposable pinger;
+
+    /**
+     * Starts pinging the nodes of the given cluster client, unless already started.
+     */
+    public synchronized void start(RedissonClient client, Duration interval) {
+
+        if (pinger != null) {
+            return;
+        }
+        log.info("Pinging redis cluster nodes every :: {}", interval);
+        pinger = Flux.interval(Duration.ZERO, interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> Mono.fromRunnable(() -> pingAll(client))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .onErrorResume(e -> {
+                            log.error("Failed to ping redis cluster nodes", e);
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    private void pingAll(RedissonClient client) {
+
+        RedisCluster cluster = client.getRedisNodes(RedisNodes.CLUSTER);
+        List<RedisNode> nodes = new ArrayList<>(cluster.getMasters());
+        nodes.addAll(cluster.getSlaves());
+        for (RedisNode node : nodes) {
+            long start = System.nanoTime();
+            boolean answered = node.ping(PING_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            long elapsed = answered ? System.nanoTime() - start : TimeUnit.MILLISECONDS.toNanos(PING_TIMEOUT_MILLIS);
+            update(keyOf(node.getAddr()), elapsed);
+        }
+    }
+
+    private void update(String node, long nanos) {
+
+        AtomicLong latency = latencies.get(node);
+        if (latency == null) {
+            latency = latencies.computeIfAbsent(node, name -> {
+                AtomicLong created = new AtomicLong(nanos);
+                Gauge.builder("redis.node.latency", created, value -> value.get() / 1_000_000.0)
+                        .tag("node", name)
+                        .baseUnit("milliseconds")
+                        .register(meterRegistry);
+                return created;
+            });
+        }
+        latency.updateAndGet(previous -> (long) (ALPHA * nanos + (1 - ALPHA) * previous));
+    }
+
+    /**
+     * Smoothed latency of a node in nanos, 0 for nodes which have not been pinged yet so that they get tried.
+     */
+    public long getLatency(InetSocketAddress address) {
+
+        AtomicLong latency = latencies.get(keyOf(address));
+        return latency == null ? 0 : latency.get();
+    }
+
+    private static String keyOf(InetSocketAddress address) {
+
+        String host = address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+        return host + ":" + address.getPort();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+
+        if (pinger != null) {
+            pinger.dispose();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.srilaxmi.cache.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connection and command level metrics of the redisson clients, used to size the connection pools against the
+ * actual load:
+ *
+ * - redis.connections.open: netty channels currently open per topology (pooled, pub/sub and ping connections)
+ * - redis.connections.pool.size: configured connections per node, to compare the open connections against
+ * - redis.commands.pending: commands sent by the caches that have not been answered yet
+ * - redis.command.latency: time from sending a command until its response, per command
+ */
+@Component
+public class RedisCommandMetrics {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, AtomicInteger> openConnections = new ConcurrentHashMap<>();
+
+    private final Map<String, Timer> latencyTimers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger pendingCommands = new AtomicInteger();
+
+    private volatile boolean pendingGaugeRegistered;
+
+    public void registerPoolSize(String topology, int poolSize) {
+        Gauge.builder("redis.connections.pool.size", () -> poolSize)
+                .tag("topology", topology)
+                .register(meterRegistry);
+    }
+
+    public void connectionOpened(String topology) {
+        openConnections(topology).incrementAndGet();
+    }
+
+    public void connectionClosed(String topology) {
+        openConnections(topology).decrementAndGet();
+    }
+
+    /**
+     * Times a redis command and counts it as pending until it terminates.
+     */
+    public <T> Mono<T> record(String command, Mono<T> commandMono) {
+
+        registerPendingGauge();
+        Timer timer = latencyTimers.computeIfAbsent(command, name -> Timer.builder("redis.command.latency")
+                .tag("command", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            pendingCommands.incrementAndGet();
+            return commandMono.doFinally(signal -> {
+                pendingCommands.decrementAndGet();
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            });
+        });
+    }
+
+    private AtomicInteger openConnections(String topology) {
+        return openConnections.computeIfAbsent(topology, name -> {
+            AtomicInteger connections = new AtomicInteger();
+            Gauge.builder("redis.connections.open", connections, AtomicInteger::get)
+                    .tag("topology", name)
+                    .register(meterRegistry);
+            return connections;
+        });
+    }
+
+    private void registerPendingGauge() {
+        if (!pendingGaugeRegistered) {
+            Gauge.builder("redis.commands.pending", pendingCommands, AtomicInteger::get)
+                    .register(meterRegistry);
+            pendingGaugeRegistered = true;
+        }
+    }
+}
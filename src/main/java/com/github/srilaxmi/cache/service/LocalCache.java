@@ -1,21 +1,59 @@
 package com.github.srilaxmi.cache.service;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.srilaxmi.cache.backend.OffHeapStore;
+import com.github.srilaxmi.cache.codec.ValueCodecRegistry;
+import com.github.srilaxmi.cache.configuration.LocalCacheProperties;
 import com.github.srilaxmi.cache.constants.EntityCacheName;
+import com.github.srilaxmi.cache.metrics.CacheMetrics;
+import com.github.srilaxmi.cache.metrics.HotKeyTracker;
 import com.github.srilaxmi.cache.util.JsonUtil;
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Ints;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RLocalCachedMap;
+import org.redisson.api.RLock;
+import org.redisson.api.RTopic;
+import org.redisson.api.listener.LocalCacheInvalidateListener;
+import org.redisson.api.listener.LocalCacheUpdateListener;
+import org.redisson.cache.LocalCachedMapClear;
+import org.redisson.cache.LocalCachedMapInvalidate;
+import org.redisson.cache.LocalCachedMapUpdate;
+import org.redisson.misc.Hash;
 import org.springframework.cache.Cache;
 import org.springframework.cache.support.SimpleValueWrapper;
 import org.springframework.lang.NonNull;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
 
 @Slf4j
 public class LocalCache implements Cache {
 
+    private static final BaseEncoding KEY_HASH_ENCODING = BaseEncoding.base16().lowerCase();
+
     /**
      * A RLocalCachedMap is a special map data structure provided by Redis.
      * It is basically just a local in-memory hashMap (with one special property) that contains a copy of the central
@@ -34,13 +72,152 @@ public class LocalCache implements Cache {
     // The name of the cache.
     private final EntityCacheName entityCacheName;
 
-    // For performance tracking
-    private final AtomicLong hits = new AtomicLong();
-    private final AtomicLong misses = new AtomicLong();
+    // Encodes values in the format configured for this cache and decodes whatever format an entry was stored in.
+    private final ValueCodecRegistry codecRegistry;
+
+    /**
+     * Optional tier of decoded objects in front of the map, keyed by the string form of the cache key (the form the
+     * map itself stores keys in). A hit here costs a hash lookup and no deserialisation at all.
+     *
+     * Entries are dropped whenever this instance writes the key, and are no longer served once another instance has
+     * written it: every entry keeps the stamp of the bucket of its key hash in decodedStamps, which the invalidations
+     * of the map topic bump, so a hit never needs the heap copy of the map. Entries live at most the time-to-live and
+     * max idle time of the cache. Null when the tier is disabled for this cache.
+     */
+    private final com.github.benmanes.caffeine.cache.Cache<String, DecodedEntry> decodedTier;
+
+    // Invalidation stamps of the decoded tier per bucket of key hashes, see bucketOf
+    private final AtomicLongArray decodedStamps;
+
+    /**
+     * Optional tier of stored bytes in direct memory between the heap copy of the map and redis, keyed by the hash of
+     * the encoded key, see toKeyHash. It is filled with every value the map has to read from redis, so it ends up
+     * holding far more entries than the heap copy, and is evicted oldest first once its byte budget is used up.
+     *
+     * Invalidated by this instance's writes and by the messages other instances send on the topic of the map, and
+     * dropped whole when the connection to redis comes back, see onReconnect. Entries live at most the time-to-live of
+     * the cache; the max idle time is not applied to them. Null when the tier is disabled for this cache.
+     */
+    private final OffHeapStore offHeapTier;
+
+    private final Counter offHeapTierHits;
+
+    /**
+     * Warm-start snapshot attached after a restart, see LocalCacheManager. It is keyed and invalidated like the
+     * off-heap tier, consulted after it and detached once it reaches its expiry time.
+     *
+     * Keys written by any instance since the snapshot was taken are dropped from it when it is attached, and the
+     * whole snapshot is discarded when the cache was cleared meanwhile, see LocalCacheWriteLog. Null when snapshots
+     * are disabled.
+     */
+    private final LocalCacheWriteLog writeLog;
+
+    private volatile LocalCacheSnapshot snapshot;
+
+    // Snapshot being checked against the write log by attachSnapshot: invalidated like the attached one, never served
+    private volatile LocalCacheSnapshot pendingSnapshot;
+
+    private volatile long snapshotExpiresAt;
+
+    private final Counter snapshotHits;
+
+    // Topic of the map, followed by the off-heap tier and the snapshot, see onTopicMessage. Null in benchmarks.
+    private final RTopic topic;
+
+    private volatile int topicListenerId = -1;
+
+    // Bumped on every invalidation, so that a get racing with an invalidation does not keep a stale decoded object or
+    // stale bytes in the off-heap tier
+    private final AtomicLong tierGeneration = new AtomicLong();
+
+    // Loads in flight on this instance through get(key, valueLoader), keyed like the decoded tier
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> loads = new ConcurrentHashMap<>();
+
+    private final LocalCacheProperties.Settings settings;
+
+    private final HotKeyTracker hotKeyTracker;
+
+    /**
+     * Refresh-ahead: when the refresh-after age of this cache is set, get(key, valueLoader) keeps serving an entry
+     * that has grown older than it and hands one reload of the key to the shared refresh executor.
+     *
+     * The age of an entry is measured from when this instance wrote it, or first read it after it was written by
+     * another instance. Null when refresh-ahead is disabled for this cache.
+     */
+    private final com.github.benmanes.caffeine.cache.Cache<String, Long> writeTimes;
+
+    // Keys whose reload has been handed to the executor and has not finished yet
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final Executor refreshExecutor;
+
+    private final Timer refreshTimer;
+    private final Counter failedRefreshes;
+    private final Counter rejectedRefreshes;
+    private final Counter skippedRefreshes;
+
+    // Time callers spent waiting for a load run by another thread or instance
+    private final Timer loaderWaitTimer;
 
-    public LocalCache(EntityCacheName entityCacheName, RLocalCachedMap<Object, Object> map) {
+    // Callers that got their value from a load run by another thread or instance instead of running the loader
+    private final Counter localCollapsedLoads;
+    private final Counter distributedCollapsedLoads;
+
+    // For performance tracking, see CacheMetrics
+    private final CacheMetrics.OperationMetrics getMetrics;
+    private final CacheMetrics.OperationMetrics putMetrics;
+    private final CacheMetrics.OperationMetrics evictMetrics;
+    private final CacheMetrics.OperationMetrics clearMetrics;
+
+    public LocalCache(
+            EntityCacheName entityCacheName,
+            RLocalCachedMap<Object, Object> map,
+            ValueCodecRegistry codecRegistry,
+            LocalCacheProperties.Settings settings,
+            CacheMetrics cacheMetrics,
+            HotKeyTracker hotKeyTracker,
+            Executor refreshExecutor,
+            LocalCacheWriteLog writeLog,
+            RTopic topic
+    ) {
         this.entityCacheName = entityCacheName;
         this.map = map;
+        this.codecRegistry = codecRegistry;
+        this.settings = settings;
+        this.hotKeyTracker = hotKeyTracker;
+        this.refreshExecutor = refreshExecutor;
+        this.writeLog = writeLog;
+        this.topic = topic;
+        this.getMetrics = cacheMetrics.operation(CacheMetrics.LOCAL, entityCacheName.name(), "get");
+        this.putMetrics = cacheMetrics.operation(CacheMetrics.LOCAL, entityCacheName.name(), "put");
+        this.evictMetrics = cacheMetrics.operation(CacheMetrics.LOCAL, entityCacheName.name(), "evict");
+        this.clearMetrics = cacheMetrics.operation(CacheMetrics.LOCAL, entityCacheName.name(), "clear");
+        MeterRegistry meterRegistry = cacheMetrics.getMeterRegistry();
+        this.loaderWaitTimer = meterRegistry.timer("cache.loader.wait", "cache", entityCacheName.name());
+        this.localCollapsedLoads = meterRegistry.counter("cache.loader.collapsed",
+                                                         "cache", entityCacheName.name(), "scope", "local");
+        this.distributedCollapsedLoads = meterRegistry.counter("cache.loader.collapsed",
+                                                               "cache", entityCacheName.name(), "scope", "distributed");
+        this.refreshTimer = meterRegistry.timer("cache.refresh", "cache", entityCacheName.name());
+        this.failedRefreshes = meterRegistry.counter("cache.refresh.dropped",
+                                                     "cache", entityCacheName.name(), "reason", "failed");
+        this.rejectedRefreshes = meterRegistry.counter("cache.refresh.dropped",
+                                                       "cache", entityCacheName.name(), "reason", "rejected");
+        this.skippedRefreshes = meterRegistry.counter("cache.refresh.dropped",
+                                                      "cache", entityCacheName.name(), "reason", "leased");
+        this.offHeapTierHits = meterRegistry.counter("cache.offheap.hits", "cache", entityCacheName.name());
+        this.snapshotHits = meterRegistry.counter("cache.snapshot.hits", "cache", entityCacheName.name());
+        this.decodedTier = settings.isDecodedTier() ? buildDecodedTier(settings) : null;
+        // A few buckets per entry, so that a remote write rarely drops the entries of other keys
+        int stampBuckets = Integer.highestOneBit(Math.min(1 << 24, Math.max(1024, settings.getDecodedTierSize() * 4)));
+        this.decodedStamps = settings.isDecodedTier() ? new AtomicLongArray(stampBuckets) : null;
+        this.offHeapTier = settings.isOffHeapTier()
+                ? new OffHeapStore(settings.getOffHeapTierMaxBytes(), settings.getOffHeapTierSegments())
+                : null;
+        this.writeTimes = isRefreshAhead() ? buildWriteTimes(settings) : null;
+        if (decodedTier != null || offHeapTier != null || writeTimes != null || writeLog != null) {
+            addChangeListeners();
+        }
     }
 
     @Override
@@ -57,25 +234,185 @@ public class LocalCache implements Cache {
 
     @Override
     public ValueWrapper get(@NonNull Object key) {
+        long start = System.nanoTime();
         try {
-            Object value = map.get(key);
+            if (decodedTier != null) {
+                String tierKey = toTierKey(key);
+                DecodedEntry decoded = decodedTier.getIfPresent(tierKey);
+                if (decoded != null) {
+                    if (decodedStamps.get(decoded.bucket) == decoded.stamp) {
+                        hotKeyTracker.record(entityCacheName.name(), tierKey, -1);
+                        getMetrics.hit(start);
+                        return new SimpleValueWrapper(decoded.value);
+                    }
+                    // Another instance has written a key of its bucket since it was decoded
+                    decodedTier.invalidate(tierKey);
+                }
+            }
+            long generation = tierGeneration.get();
+            // Hashed once per miss, and the stamp read before the value, so that a write racing with the read bumps it
+            byte[] keyHash = decodedTier != null ? hashOf(key) : null;
+            long stamp = keyHash != null ? decodedStamps.get(bucketOf(keyHash)) : 0;
+            Object value = offHeapTier == null && snapshot == null
+                    ? map.get(key)
+                    : getThroughLocalTiers(key, keyHash, generation);
             if (value == null) {
                 log.info("Entry for key {} not found in {} cache", key, entityCacheName.name());
-                addCacheMiss();
+                getMetrics.miss(start);
                 return null;
             }
-            addCacheHit();
-            Object cachedObject = JsonUtil.fromJsonString((String) value, entityCacheName.getClazz(), entityCacheName.getTypeReference());
+            hotKeyTracker.record(entityCacheName.name(), toTierKey(key), ((byte[]) value).length);
+            Object cachedObject = codecRegistry.decode((byte[]) value, entityCacheName);
             if (cachedObject == null) {
                 log.error("Failed to deserialize object :: {} :: {}", value, key);
+                getMetrics.error(start);
                 return null;
             }
 //        log.info("Returning cached value for entry with key {} from {} cache", key, entityCacheName.name());
+            if (keyHash != null) {
+                keepDecoded(key, new DecodedEntry(cachedObject, bucketOf(keyHash), stamp), generation);
+            }
+            getMetrics.hit(start);
             return new SimpleValueWrapper(cachedObject);
         } catch (Exception e) {
             log.error("Error in LocalCache get", e);
+            getMetrics.error(start);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the stored bytes of a key from the heap copy of the map, then from the off-heap tier and the snapshot,
+     * and only then from redis. Hits of the local tiers are occasionally read through the map as well, to promote the
+     * keys that keep being read back into the heap copy.
+     */
+    private Object getThroughLocalTiers(Object key, byte[] hash, long generation) {
+
+        Object value = map.getCachedMap().get(key);
+        if (value != null) {
+            return value;
+        }
+        String keyHash = KEY_HASH_ENCODING.encode(hash != null ? hash : hashOf(key));
+        long now = System.currentTimeMillis();
+        byte[] stored = offHeapTier != null ? offHeapTier.get(keyHash, now) : null;
+        if (stored != null) {
+            offHeapTierHits.increment();
+            promoteIfHot(key);
+            return stored;
+        }
+        stored = getFromSnapshot(keyHash, now);
+        if (stored != null) {
+            snapshotHits.increment();
+            promoteIfHot(key);
+            return stored;
+        }
+        value = map.get(key);
+        if (value != null && offHeapTier != null) {
+            keepOffHeap(key, keyHash, (byte[]) value, generation);
+        }
+        return value;
+    }
+
+    private void promoteIfHot(Object key) {
+
+        int promoteRate = settings.getOffHeapTierPromoteRate();
+        if (promoteRate > 0 && ThreadLocalRandom.current().nextInt(promoteRate) == 0) {
+            map.getAsync(key);
+        }
+    }
+
+    private byte[] getFromSnapshot(String keyHash, long now) {
+
+        LocalCacheSnapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        if (now >= snapshotExpiresAt) {
+            log.info("Snapshot of {} cache expired, detaching it", entityCacheName.name());
+            snapshot = null;
             return null;
         }
+        return current.get(keyHash);
+    }
+
+    /**
+     * Serves the entries of a snapshot until expiresAt, minus the keys written since the snapshot was taken. Returns
+     * whether the snapshot was attached; it is not when the cache was cleared since.
+     *
+     * The write log is replayed against the snapshot before any of it is served. Meanwhile the snapshot is pending:
+     * it already receives the invalidations of the map topic, so that a write made while the log is read is either in
+     * the log or reaches the snapshot through the topic.
+     */
+    public boolean attachSnapshot(LocalCacheSnapshot restored, long expiresAt) {
+
+        if (writeLog == null || System.currentTimeMillis() >= expiresAt
+                || writeLog.isClearedSince(restored.getCreatedAt())) {
+            return false;
+        }
+        pendingSnapshot = restored;
+        Collection<String> written = writeLog.getWrittenSince(restored.getCreatedAt());
+        written.forEach(restored::remove);
+        if (writeLog.isClearedSince(restored.getCreatedAt())) {
+            pendingSnapshot = null;
+            return false;
+        }
+        log.info("Dropped {} keys written since the snapshot of {} cache was taken", written.size(),
+                 entityCacheName.name());
+        snapshotExpiresAt = expiresAt;
+        snapshot = restored;
+        // A clear may have discarded the pending snapshot before it was attached
+        if (pendingSnapshot != restored) {
+            snapshot = null;
+            return false;
+        }
+        pendingSnapshot = null;
+        return true;
+    }
+
+    /**
+     * Writes a snapshot of the entries held locally (heap copy, off-heap tier and attached snapshot) to the given file
+     * and returns the number of entries written. The snapshot counts as taken when it starts, so that a write racing
+     * with it is found in the write log when it is restored.
+     */
+    public int writeSnapshot(Path path, long maxBytes) throws IOException {
+
+        if (writeLog == null) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        LocalCacheSnapshot current = snapshot;
+        return LocalCacheSnapshot.write(path, now, maxBytes, consumer -> {
+            Set<String> written = new HashSet<>();
+            map.getCachedMap().forEach((key, value) -> {
+                String keyHash = toKeyHash(key);
+                written.add(keyHash);
+                consumer.accept(keyHash, (byte[]) value);
+            });
+            if (offHeapTier != null) {
+                offHeapTier.forEach(now, (key, value) -> {
+                    if (written.add(key)) {
+                        consumer.accept(key, value);
+                    }
+                });
+            }
+            if (current != null && now < snapshotExpiresAt) {
+                current.forEach((key, value) -> {
+                    if (written.add(key)) {
+                        consumer.accept(key, value);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Forgets the writes which no snapshot that may still be restored was taken before.
+     */
+    public void trimWriteLog(long before) {
+
+        if (writeLog != null) {
+            writeLog.trim(before);
+        }
     }
 
     @Override
@@ -86,30 +423,205 @@ public class LocalCache implements Cache {
         return null;
     }
 
+    /**
+     * Used by {@code @Cacheable(sync = true)}. On a miss only one thread per instance runs the loader for a key, the
+     * other threads asking for the same key wait for its result.
+     *
+     * With {@code distributed-lease} enabled the loading thread also takes a redis lock on the key first, so that only
+     * one instance in the cluster runs the loader. Instances that find the lock taken wait up to {@code lease-wait}
+     * for it and then read the value the lock holder has put; if the lock is not released in time they run the loader
+     * themselves rather than fail the call.
+     */
     @Override
+    @SuppressWarnings("unchecked")
     public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
-        // This method doesn't seem to be used by Spring cache
-        // We will throw an error just in-case, so that we know if this method gets erroneously called.
-        log.error("Unexpected get(Object key, Callable<T> valueLoader) method of RedisCache called!");
-        return null;
+
+        ValueWrapper cached = get(key);
+        if (cached != null) {
+            refreshIfStale(key, valueLoader);
+            return (T) cached.get();
+        }
+
+        String loadKey = toTierKey(key);
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> running = loads.putIfAbsent(loadKey, load);
+        if (running != null) {
+            localCollapsedLoads.increment();
+            return (T) awaitLoad(key, valueLoader, running);
+        }
+
+        try {
+            Object value = settings.isDistributedLease()
+                    ? loadUnderLease(key, valueLoader)
+                    : loadAndPut(key, valueLoader);
+            load.complete(value);
+            return (T) value;
+        } catch (Exception e) {
+            load.completeExceptionally(e);
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } finally {
+            loads.remove(loadKey, load);
+        }
+    }
+
+    private Object awaitLoad(Object key, Callable<?> valueLoader, CompletableFuture<Object> running) {
+
+        long start = System.nanoTime();
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } catch (ExecutionException e) {
+            throw new ValueRetrievalException(key, valueLoader, e.getCause());
+        } finally {
+            loaderWaitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Object loadUnderLease(Object key, Callable<?> valueLoader) throws Exception {
+
+        RLock lease = map.getLock(key);
+        long start = System.nanoTime();
+        boolean acquired = lease.tryLock(settings.getLeaseWait().toMillis(), settings.getLeaseTime().toMillis(),
+                                         TimeUnit.MILLISECONDS);
+        long waited = System.nanoTime() - start;
+        if (!acquired) {
+            loaderWaitTimer.record(waited, TimeUnit.NANOSECONDS);
+            log.warn("Lease for key {} of {} cache not released within {}, loading without it",
+                     key, entityCacheName.name(), settings.getLeaseWait());
+            return loadAndPut(key, valueLoader);
+        }
+        try {
+            // Another instance may have loaded the value while we were waiting for the lease
+            ValueWrapper cached = get(key);
+            if (cached != null) {
+                loaderWaitTimer.record(waited, TimeUnit.NANOSECONDS);
+                distributedCollapsedLoads.increment();
+                return cached.get();
+            }
+            return loadAndPut(key, valueLoader);
+        } finally {
+            unlock(lease);
+        }
+    }
+
+    /**
+     * Releases a lease unless it has already run out, in which case it may be held by another instance by now.
+     */
+    private void unlock(RLock lease) {
+
+        if (lease.isHeldByCurrentThread()) {
+            lease.unlock();
+        } else {
+            log.warn("Lease {} of {} cache ran out before the load finished, consider a longer lease-time",
+                     lease.getName(), entityCacheName.name());
+        }
+    }
+
+    private boolean isRefreshAhead() {
+        return !settings.getRefreshAfter().isZero() && !settings.getRefreshAfter().isNegative();
+    }
+
+    /**
+     * Hands a reload of the key to the refresh executor if the entry has passed its refresh-after age and no reload
+     * of it is pending. A full executor queue drops the reload, the cached value is then served until it is evicted.
+     */
+    private void refreshIfStale(Object key, Callable<?> valueLoader) {
+
+        if (writeTimes == null) {
+            return;
+        }
+        String tierKey = toTierKey(key);
+        long now = System.nanoTime();
+        Long writtenAt = writeTimes.get(tierKey, ignored -> now);
+        if (now - writtenAt < settings.getRefreshAfter().toNanos() || !refreshing.add(tierKey)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> refresh(key, tierKey, valueLoader));
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(tierKey);
+            rejectedRefreshes.increment();
+        }
+    }
+
+    /**
+     * Reloads an entry in the background. With distributed-lease enabled only the instance which gets the lease
+     * right away reloads, the others pick the new value up through the map sync.
+     */
+    private void refresh(Object key, String tierKey, Callable<?> valueLoader) {
+
+        long start = System.nanoTime();
+        try {
+            if (!settings.isDistributedLease()) {
+                loadAndPut(key, valueLoader);
+            } else {
+                RLock lease = map.getLock(key);
+                if (!lease.tryLock(0, settings.getLeaseTime().toMillis(), TimeUnit.MILLISECONDS)) {
+                    skippedRefreshes.increment();
+                    return;
+                }
+                try {
+                    loadAndPut(key, valueLoader);
+                } finally {
+                    unlock(lease);
+                }
+            }
+            refreshTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            log.warn("Refresh of key {} of {} cache failed, serving the cached value until it expires",
+                     key, entityCacheName.name(), e);
+            failedRefreshes.increment();
+        } finally {
+            refreshing.remove(tierKey);
+        }
+    }
+
+    private Object loadAndPut(Object key, Callable<?> valueLoader) throws Exception {
+
+        Object value = valueLoader.call();
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
     }
 
     @Override
     public void put(@NonNull Object key, Object value) {
 //        log.info("Inserting entry for key:{} and value:{} into {} cache", key, JsonUtil.toJsonString(value), entityCacheName.name());
+        long start = System.nanoTime();
         try {
-            map.fastPut(key, JsonUtil.toJsonString(value));
+            byte[] stored = codecRegistry.encode(entityCacheName, value);
+            hotKeyTracker.record(entityCacheName.name(), toTierKey(key), stored.length);
+            map.fastPut(key, stored);
+            if (writeLog != null) {
+                writeLog.recordWrite(toKeyHash(key));
+            }
+            invalidateTiers(key);
+            if (writeTimes != null) {
+                writeTimes.put(toTierKey(key), System.nanoTime());
+            }
+            putMetrics.success(start);
         } catch (Exception e) {
             log.error("Error in LocalCache put", e);
+            putMetrics.error(start);
         }
     }
 
     @Override
     public void evict(@NonNull Object key) {
+        long start = System.nanoTime();
         try {
             map.fastRemove(key);
+            if (writeLog != null) {
+                writeLog.recordWrite(toKeyHash(key));
+            }
+            invalidateTiers(key);
+            evictMetrics.success(start);
         } catch (Exception e) {
             log.error("Error in LocalCache evict", e);
+            evictMetrics.error(start);
         }
     }
 
@@ -117,11 +629,18 @@ public class LocalCache implements Cache {
      * Evict a list of keys from cache
      */
     public void evict(@NonNull List<Object> keys) {
+        long start = System.nanoTime();
         try {
             log.info("Removing entries for keys:{} from {} cache", JsonUtil.toJsonString(keys), entityCacheName.name());
             map.fastRemove(keys.toArray(new Object[0]));
+            if (writeLog != null) {
+                writeLog.recordWrites(keys.stream().map(this::toKeyHash).collect(Collectors.toList()));
+            }
+            keys.forEach(this::invalidateTiers);
+            evictMetrics.success(start);
         } catch (Exception e) {
             log.error("Error in LocalCache evict", e);
+            evictMetrics.error(start);
         }
     }
 
@@ -130,11 +649,18 @@ public class LocalCache implements Cache {
      */
     @Override
     public void clear() {
+        long start = System.nanoTime();
         try {
             log.info("Clearing all entries for {} cache", entityCacheName.name());
             map.clear();
+            if (writeLog != null) {
+                writeLog.recordClear();
+            }
+            invalidateTiers(null);
+            clearMetrics.success(start);
         } catch (Exception e) {
             log.error("Error in LocalCache clear", e);
+            clearMetrics.error(start);
         }
     }
 
@@ -147,37 +673,279 @@ public class LocalCache implements Cache {
     public void clearLocalDataOnly() {
         log.info("Clearing all entries for {} cache from local cacheMap only", entityCacheName.name());
         map.clearLocalCache();
+        invalidateTiers(null);
     }
 
+    /**
+     * Releases this instance of the cache once it has been removed from LocalCacheManager: the map stops listening to
+     * redis and drops its heap copy, and the local tiers and the snapshot are dropped. The direct memory of the
+     * off-heap tier and the mapping of the snapshot file are freed once the cache itself is collected.
+     */
+    public void destroy() {
+        if (topicListenerId != -1) {
+            topic.removeListener(topicListenerId);
+        }
+        invalidateTiers(null);
+        map.destroy();
+    }
 
     /**
-     * The number of get requests that were satisfied by the cache.
-     * @return the number of hits
+     * Drops the local tiers and the snapshot after the connection to redis was re-established. Invalidations sent by
+     * other instances while it was down never reach the listeners below, and unlike the heap copy of the map, which
+     * follows the reconnection strategy of the cache, these tiers have no other way to catch up.
      */
-    public long getCacheHits(){
-        return hits.get();
+    public void onReconnect() {
+
+        if (offHeapTier != null || snapshot != null) {
+            log.info("Dropping the local tiers of {} cache after a reconnect", entityCacheName.name());
+        }
+        invalidateTiers(null);
     }
 
     /**
-     * A miss is a get request that is not satisfied.
-     * @return the number of misses
+     * Keeps the local tiers and the write times in line with changes made by other instances.
      */
-    public long getCacheMisses(){
-        return misses.get();
+    private void addChangeListeners() {
+
+        if (topic != null && (decodedTier != null || offHeapTier != null || writeLog != null)) {
+            topicListenerId = topic.addListener(Object.class, (channel, message) -> onTopicMessage(message));
+        }
+        map.addListener(new LocalCacheInvalidateListener<Object, Object>() {
+            @Override
+            public void onInvalidate(Object key, Object value) {
+                invalidateTiers(key);
+            }
+        });
+        map.addListener(new LocalCacheUpdateListener<Object, Object>() {
+            @Override
+            public void onUpdate(Object key, Object value) {
+                invalidateTiers(key);
+            }
+        });
+    }
+
+    /**
+     * The listeners above are only run by redisson for keys held in the heap copy of the map, and not at all for a
+     * clear, whereas the decoded and off-heap tiers and the snapshot outlive the keys of the heap copy. They follow
+     * the messages of the map directly instead: invalidations name the hashes of the keys, updates their encoded form,
+     * and a clear drops everything.
+     */
+    private void onTopicMessage(Object message) {
+
+        if (message instanceof LocalCachedMapClear) {
+            invalidateTiers(null);
+        } else if (message instanceof LocalCachedMapInvalidate) {
+            for (byte[] keyHash : ((LocalCachedMapInvalidate) message).getKeyHashes()) {
+                invalidateHash(keyHash);
+            }
+        } else if (message instanceof LocalCachedMapUpdate) {
+            for (LocalCachedMapUpdate.Entry entry : ((LocalCachedMapUpdate) message).getEntries()) {
+                invalidateHash(Hash.hash128toArray(Unpooled.wrappedBuffer(entry.getKey())));
+            }
+        }
+    }
+
+    private void invalidateHash(byte[] keyHash) {
+
+        if (decodedStamps != null) {
+            decodedStamps.incrementAndGet(bucketOf(keyHash));
+        }
+        if (offHeapTier != null || snapshot != null || pendingSnapshot != null) {
+            invalidateStored(KEY_HASH_ENCODING.encode(keyHash));
+        }
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<String, Long> buildWriteTimes(LocalCacheProperties.Settings settings) {
+
+        // Only needs to cover the keys held locally, anything beyond is counted as freshly written when read again
+        return Caffeine.newBuilder()
+                .maximumSize(Math.max(1000, settings.getCacheSize()))
+                .build();
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<String, DecodedEntry> buildDecodedTier(LocalCacheProperties.Settings settings) {
+
+        Duration expireAfterWrite = settings.getDecodedTierExpireAfterWrite();
+        Duration timeToLive = settings.getTimeToLive();
+        if (!timeToLive.isZero() && !timeToLive.isNegative() && timeToLive.compareTo(expireAfterWrite) < 0) {
+            expireAfterWrite = timeToLive;
+        }
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(settings.getDecodedTierSize())
+                .expireAfterWrite(expireAfterWrite);
+        if (!settings.getMaxIdle().isZero() && !settings.getMaxIdle().isNegative()) {
+            builder.expireAfterAccess(settings.getMaxIdle());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Keeps a freshly decoded object, unless the tier was invalidated since the stored bytes were read.
+     */
+    private void keepDecoded(Object key, DecodedEntry decoded, long generation) {
+
+        if (decodedTier == null || tierGeneration.get() != generation) {
+            return;
+        }
+        String tierKey = toTierKey(key);
+        decodedTier.put(tierKey, decoded);
+        // An invalidation may have run between the check and the put
+        if (tierGeneration.get() != generation) {
+            decodedTier.invalidate(tierKey);
+        }
+    }
+
+    /**
+     * Keeps stored bytes read from redis in the off-heap tier, unless the tiers were invalidated since they were read.
+     * Values larger than a segment of the tier are not kept.
+     */
+    private void keepOffHeap(Object key, String keyHash, byte[] stored, long generation) {
+
+        if (tierGeneration.get() != generation) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long timeToLive = settings.getTimeToLive().toMillis();
+        try {
+            offHeapTier.put(keyHash, stored, timeToLive > 0 ? now + timeToLive : 0, now);
+        } catch (IllegalArgumentException e) {
+            log.warn("Value of key {} of {} cache is too large for the off-heap tier :: {} bytes",
+                     key, entityCacheName.name(), stored.length);
+            return;
+        }
+        // An invalidation may have run between the check and the put
+        if (tierGeneration.get() != generation) {
+            offHeapTier.remove(keyHash, now);
+        }
+    }
+
+    /**
+     * Drops a key from the decoded and off-heap tiers and the snapshot and forgets its write time, or does so for all
+     * keys when the key is null.
+     */
+    private void invalidateTiers(Object key) {
+
+        if (writeTimes != null) {
+            if (key == null) {
+                writeTimes.invalidateAll();
+            } else {
+                writeTimes.invalidate(toTierKey(key));
+            }
+        }
+        if (offHeapTier != null || snapshot != null || pendingSnapshot != null) {
+            invalidateStored(key == null ? null : toKeyHash(key));
+        } else if (decodedTier != null) {
+            tierGeneration.incrementAndGet();
+        }
+        if (decodedTier == null) {
+            return;
+        }
+        if (key == null) {
+            decodedTier.invalidateAll();
+        } else {
+            decodedTier.invalidate(toTierKey(key));
+        }
+    }
+
+    /**
+     * Drops a key hash from the off-heap tier and the snapshots, or drops them whole when the hash is null.
+     */
+    private void invalidateStored(String keyHash) {
+
+        tierGeneration.incrementAndGet();
+        LocalCacheSnapshot pending = pendingSnapshot;
+        if (pending != null) {
+            if (keyHash == null) {
+                pendingSnapshot = null;
+            } else {
+                pending.remove(keyHash);
+            }
+        }
+        LocalCacheSnapshot current = snapshot;
+        if (current != null) {
+            if (keyHash == null) {
+                snapshot = null;
+            } else {
+                current.remove(keyHash);
+            }
+        }
+        if (offHeapTier != null) {
+            if (keyHash == null) {
+                offHeapTier.clear();
+            } else {
+                offHeapTier.remove(keyHash, System.currentTimeMillis());
+            }
+        }
+    }
+
+    private static String toTierKey(Object key) {
+        return key instanceof String ? (String) key : String.valueOf(key);
+    }
+
+    /**
+     * The key of an entry in the off-heap tier, the snapshot and the write log: the hash redisson computes from the
+     * encoded key, in hex. It is the form in which the map sends its invalidations, see onTopicMessage.
+     */
+    private String toKeyHash(Object key) {
+        return KEY_HASH_ENCODING.encode(hashOf(key));
+    }
+
+    private byte[] hashOf(Object key) {
+
+        ByteBuf encoded;
+        try {
+            encoded = map.getCodec().getMapKeyEncoder().encode(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            return Hash.hash128toArray(encoded);
+        } finally {
+            encoded.release();
+        }
+    }
+
+    private int bucketOf(byte[] keyHash) {
+        return Ints.fromByteArray(keyHash) & (decodedStamps.length() - 1);
+    }
+
+    /**
+     * A decoded object, with the stamp its bucket had when the stored bytes were read.
+     */
+    private static final class DecodedEntry {
+
+        private final Object value;
+
+        private final int bucket;
+
+        private final long stamp;
+
+        private DecodedEntry(Object value, int bucket, long stamp) {
+            this.value = value;
+            this.bucket = bucket;
+            this.stamp = stamp;
+        }
     }
 
+
     /**
-     * Increment the hits counter
+     * The number of get requests that were satisfied by the cache.
+     * @return the number of hits
      */
-    private void addCacheHit(){
-        hits.incrementAndGet();
+    public long getCacheHits(){
+        return getMetrics.getHits();
     }
 
     /**
-     * Increment the misses counter
+     * A miss is a get request that is not satisfied.
+     * @return the number of misses
      */
-    private void addCacheMiss(){
-        misses.incrementAndGet();
+    public long getCacheMisses(){
+        return getMetrics.getMisses();
+    }
+
+    public LocalCacheProperties.Settings getSettings() {
+        return settings;
     }
 
     public long getCacheSize() {
@@ -191,4 +959,19 @@ public class LocalCache implements Cache {
     public Set<Object> getCachedKeySet() {
         return map.cachedKeySet();
     }
+
+    /**
+     * Number of entries still served from the attached snapshot, or -1 when none is attached.
+     */
+    public long getSnapshotSize() {
+        LocalCacheSnapshot current = snapshot;
+        return current == null ? -1 : current.size();
+    }
+
+    /**
+     * Number of entries in the off-heap tier, or -1 when the tier is disabled.
+     */
+    public long getOffHeapTierSize() {
+        return offHeapTier == null ? -1 : offHeapTier.size();
+    }
 }
@@ -1,17 +1,36 @@
 package com.github.srilaxmi.cache.service;
 
 
+import com.github.srilaxmi.cache.codec.ValueCodecRegistry;
+import com.github.srilaxmi.cache.configuration.LocalCacheProperties;
+import com.github.srilaxmi.cache.configuration.RedissonCustomClient;
 import com.github.srilaxmi.cache.constants.EntityCacheName;
-import com.github.srilaxmi.cache.util.JsonUtil;
+import com.github.srilaxmi.cache.metrics.CacheMetrics;
+import com.github.srilaxmi.cache.metrics.HotKeyTracker;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.LocalCachedMapOptions;
 import org.redisson.api.RLocalCachedMap;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
 import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Responsible for the instantiation and management of RedisCache instances.
@@ -23,45 +42,190 @@ import java.util.*;
 @Slf4j
 public class LocalCacheManager implements CacheManager {
 
-    private static final Integer DEFAULT_CACHE_SIZE = 100;
-
     @Autowired
     private ReactiveRedisCache reactiveRedisCache;
 
+    @Autowired
+    private ValueCodecRegistry codecRegistry;
+
+    @Autowired
+    private LocalCacheProperties localCacheProperties;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    @Autowired
+    private HotKeyTracker hotKeyTracker;
+
+    @Autowired
+    private RedissonCustomClient redissonCustomClient;
+
     // A map to store the existing cache instances
-    private static final HashMap<String, LocalCache> caches = new HashMap<>();
+    private final ConcurrentHashMap<String, LocalCache> caches = new ConcurrentHashMap<>();
+
+    // Runs the refresh-ahead reloads of all caches; bounded, so that a burst of stale entries cannot pile up reloads
+    private ThreadPoolExecutor refreshExecutor;
+
+    // Writes the warm-start snapshots periodically, null when snapshots are disabled
+    private ScheduledThreadPoolExecutor snapshotExecutor;
+
+    @PostConstruct
+    public void init() throws IOException {
+
+        LocalCacheProperties.Refresh refresh = localCacheProperties.getRefresh();
+        AtomicInteger threadCount = new AtomicInteger();
+        refreshExecutor = new ThreadPoolExecutor(
+                refresh.getThreads(), refresh.getThreads(),
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, refresh.getQueueSize())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "local-cache-refresh-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        refreshExecutor.allowCoreThreadTimeOut(true);
+
+        redissonCustomClient.addReconnectListener(() -> caches.values().forEach(LocalCache::onReconnect));
+
+        LocalCacheProperties.Snapshot snapshot = localCacheProperties.getSnapshot();
+        if (snapshot.isEnabled()) {
+            Files.createDirectories(Paths.get(snapshot.getDirectory()));
+            snapshotExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "local-cache-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = snapshot.getInterval().toMillis();
+            snapshotExecutor.scheduleWithFixedDelay(this::writeSnapshots, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdownNow();
+            writeSnapshots();
+        }
+    }
 
     /**
-     * Gets the custom config options for the cache by name. These config options
-     * are fetched using the cacheConfiguration module. For now, cacheSize can be customized.
+     * Restores the warm-start snapshots left by the previous run. Runs once the context has started and before the
+     * application is marked ready, so the instance only reports ready for traffic once its local caches are warm.
+     *
+     * Restoring is cheap whatever the snapshot size: the files are mapped rather than read and values are only loaded
+     * when they are asked for. A snapshot is skipped when it is too old or when its cache has been cleared since it
+     * was taken, and keys written since are dropped from it, see LocalCache.
      */
-    public LocalCachedMapOptions<Object, Object> getOptions(Integer cacheSize) {
+    @EventListener(ApplicationStartedEvent.class)
+    public void restoreSnapshots() {
+
+        if (snapshotExecutor == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        for (EntityCacheName entityCacheName : EntityCacheName.values()) {
+            Path path = getSnapshotPath(entityCacheName.name());
+            if (!Files.exists(path)) {
+                continue;
+            }
+            try {
+                LocalCacheSnapshot restored = LocalCacheSnapshot.open(path);
+                LocalCache cache = getCache(entityCacheName.name());
+                long expiresAt = restored.getCreatedAt() + getSnapshotMaxAge(cache.getSettings()).toMillis();
+                boolean attached = cache.attachSnapshot(restored, expiresAt);
+                log.info("Snapshot of {} cache {} :: {} entries", entityCacheName.name(),
+                         attached ? "restored" : "outdated, skipped", restored.size());
+            } catch (Exception e) {
+                log.warn("Failed to restore the snapshot of {} cache", entityCacheName.name(), e);
+            }
+        }
+        log.info("Local cache snapshots restored in {} ms", System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Writes a snapshot of every cache and trims the write logs to the snapshots that may still be restored. A failure
+     * only skips the cache it happened on.
+     */
+    private void writeSnapshots() {
+
+        long maxBytes = Math.min(Integer.MAX_VALUE, localCacheProperties.getSnapshot().getMaxBytesPerCache());
+        long maxAge = localCacheProperties.getSnapshot().getMaxAge().toMillis();
+        caches.forEach((name, cache) -> {
+            try {
+                long start = System.currentTimeMillis();
+                cache.trimWriteLog(start - maxAge);
+                int entries = cache.writeSnapshot(getSnapshotPath(name), maxBytes);
+                log.info("Wrote snapshot of {} cache :: {} entries in {} ms", name, entries,
+                         System.currentTimeMillis() - start);
+            } catch (Exception e) {
+                log.warn("Failed to write the snapshot of {} cache", name, e);
+            }
+        });
+    }
+
+    private Path getSnapshotPath(String name) {
+        return Paths.get(localCacheProperties.getSnapshot().getDirectory(), name + ".snapshot");
+    }
+
+    private Duration getSnapshotMaxAge(LocalCacheProperties.Settings settings) {
+
+        Duration maxAge = localCacheProperties.getSnapshot().getMaxAge();
+        Duration timeToLive = settings.getTimeToLive();
+        if (!timeToLive.isZero() && !timeToLive.isNegative() && timeToLive.compareTo(maxAge) < 0) {
+            return timeToLive;
+        }
+        return maxAge;
+    }
+
+    /**
+     * Builds the RLocalCachedMap options of a cache from its settings under {@code cache.local}.
+     */
+    public LocalCachedMapOptions<Object, Object> getOptions(LocalCacheProperties.Settings settings) {
 
         return LocalCachedMapOptions.defaults()
-                .evictionPolicy(LocalCachedMapOptions.EvictionPolicy.LRU)
-                .syncStrategy(LocalCachedMapOptions.SyncStrategy.UPDATE)
-                .cacheSize(cacheSize);
+                .cacheSize(settings.getCacheSize())
+                .maxIdle(settings.getMaxIdle().toMillis(), TimeUnit.MILLISECONDS)
+                .timeToLive(settings.getTimeToLive().toMillis(), TimeUnit.MILLISECONDS)
+                .evictionPolicy(settings.getEvictionPolicy())
+                .syncStrategy(settings.getSyncStrategy())
+                .reconnectionStrategy(settings.getReconnectionStrategy());
     }
 
     /**
      * Used to fetch a RedisCache instance. This RedisCache is either present in memory or built if it doesn't
      * exist already. This method helps to conceal the buildIfNotPresent behavior.
+     *
+     * Safe to call concurrently: a cache is created at most once, callers asking for it while it is being created
+     * wait for it.
      */
     @NonNull
     public LocalCache getCache(@NonNull String name) {
-        LocalCache cache;
-        if (caches.containsKey(name))
-            cache = caches.get(name);
-        else {
-            LocalCachedMapOptions<Object, Object> options = getOptions(DEFAULT_CACHE_SIZE);
-            log.info("Cache for {} does not exist. Creating new Cache with config: {}",
-                     name, JsonUtil.toJsonString(options));
-
-            RLocalCachedMap<Object, Object> redisCacheMap = reactiveRedisCache.getLocalCachedMap(name, options);
-            cache = new LocalCache(EntityCacheName.valueOf(name), redisCacheMap);
-            caches.put(name, cache);
-        }
-        return cache;
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    private LocalCache createCache(String name) {
+
+        EntityCacheName entityCacheName = EntityCacheName.valueOf(name);
+        LocalCacheProperties.Settings settings = localCacheProperties.getSettings(entityCacheName);
+        log.info("Cache for {} does not exist. Creating new Cache with config: {}", name, settings);
+
+        RLocalCachedMap<Object, Object> redisCacheMap = reactiveRedisCache.getLocalCachedMap(name, getOptions(settings));
+        LocalCacheWriteLog writeLog = localCacheProperties.getSnapshot().isEnabled()
+                ? new LocalCacheWriteLog(redissonCustomClient.getRedissonClient(), name)
+                : null;
+        return new LocalCache(entityCacheName, redisCacheMap, codecRegistry, settings, cacheMetrics,
+                              hotKeyTracker, refreshExecutor, writeLog, reactiveRedisCache.getLocalCachedMapTopic(name));
+    }
+
+    /**
+     * Returns the existing cache instances, for inspection.
+     */
+    @NonNull
+    public Collection<LocalCache> getCaches() {
+        return Collections.unmodifiableCollection(caches.values());
     }
 
     /**
@@ -100,10 +264,13 @@ public class LocalCacheManager implements CacheManager {
      * has rarely been used.
      */
     public void deleteLocalCache(@NonNull String name) {
-        LocalCache cache = getCache("");
+        LocalCache cache = caches.remove(name);
+        if (cache == null) {
+            return;
+        }
         log.info("Deleting Local CacheMap {}", name);
         cache.clearLocalDataOnly();
-        caches.remove(name);
+        cache.destroy();
     }
 
 }
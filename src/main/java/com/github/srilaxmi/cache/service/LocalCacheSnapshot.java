@@ -0,0 +1,211 @@
+package com.github.srilaxmi.cache.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Snapshot of the stored bytes of one local cache, written to a file so that a restarted instance starts warm.
+ *
+ * The file holds a header ({@code magic, format, created at, entry count}) followed by the entries as
+ * {@code [key length][key][value length][value]}. It is written to a temporary file which is then moved over the
+ * previous snapshot, so a crash while writing never leaves a partial snapshot behind.
+ *
+ * An opened snapshot maps the file read-only and only keeps an index of key to value offset on the heap: values are
+ * copied out of the mapping when they are read, so pages of the file are loaded by the OS as they are needed. Keys
+ * are dropped from the index when the cache invalidates them; the snapshot never takes new values.
+ *
+ * Keys are stored in the form LocalCache keys its off-heap tier by, the hash of the encoded cache key.
+ */
+public class LocalCacheSnapshot {
+
+    private static final int MAGIC = 0x434D534E;
+    private static final int FORMAT = 3;
+
+    // magic, format, created at, entry count
+    private static final int HEADER_BYTES = 20;
+
+    private final Path path;
+
+    private final MappedByteBuffer buffer;
+
+    private final long createdAt;
+
+    // Offset of the value length of every key still served from the snapshot
+    private final Map<String, Integer> index;
+
+    private LocalCacheSnapshot(Path path, MappedByteBuffer buffer, long createdAt, Map<String, Integer> index) {
+        this.path = path;
+        this.buffer = buffer;
+        this.createdAt = createdAt;
+        this.index = index;
+    }
+
+    /**
+     * Maps a snapshot file and indexes its keys. Fails with an IOException when the file is not a complete snapshot.
+     */
+    public static LocalCacheSnapshot open(Path path) throws IOException {
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + path + " is larger than 2GB");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) {
+                throw new IOException("Snapshot " + path + " has an unknown format");
+            }
+            long createdAt = buffer.getLong();
+            int count = buffer.getInt();
+            // Every entry takes at least 8 bytes, a corrupt count must not size the index
+            int expected = Math.max(0, Math.min(count, buffer.remaining() / 8));
+            Map<String, Integer> index = new ConcurrentHashMap<>(Math.max(16, expected * 4 / 3 + 1));
+            for (int i = 0; i < count; i++) {
+                byte[] key = new byte[buffer.getInt()];
+                buffer.get(key);
+                int valueOffset = buffer.position();
+                buffer.position(valueOffset + 4 + buffer.getInt());
+                index.put(new String(key, StandardCharsets.UTF_8), valueOffset);
+            }
+            return new LocalCacheSnapshot(path, buffer, createdAt, index);
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("Snapshot " + path + " is truncated", e);
+        }
+    }
+
+    /**
+     * Writes a snapshot taken at createdAt of the entries handed over by the given source, stopping once maxBytes are
+     * written. Returns the number of entries written.
+     */
+    public static int write(
+            Path path,
+            long createdAt,
+            long maxBytes,
+            Consumer<BiConsumer<String, byte[]>> source
+    ) throws IOException {
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            // The entry count is only known at the end, the header is rewritten then
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            writeHeader(out, createdAt, 0);
+            long[] written = {HEADER_BYTES};
+            int[] entries = {0};
+            source.accept((key, value) -> {
+                byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+                long size = 8L + keyBytes.length + value.length;
+                if (written[0] + size > maxBytes) {
+                    return;
+                }
+                try {
+                    out.writeInt(keyBytes.length);
+                    out.write(keyBytes);
+                    out.writeInt(value.length);
+                    out.write(value);
+                } catch (IOException e) {
+                    throw new SnapshotWriteException(e);
+                }
+                written[0] += size;
+                entries[0]++;
+            });
+            out.flush();
+
+            count = entries[0];
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(FORMAT).putLong(createdAt).putInt(count);
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+        } catch (SnapshotWriteException e) {
+            Files.deleteIfExists(temporary);
+            throw e.getCause();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    private static void writeHeader(DataOutputStream out, long createdAt, int count) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT);
+        out.writeLong(createdAt);
+        out.writeInt(count);
+    }
+
+    /**
+     * Returns the stored bytes of a key, or null when the snapshot does not hold it (any more).
+     */
+    public byte[] get(String key) {
+
+        Integer offset = index.get(key);
+        if (offset == null) {
+            return null;
+        }
+        ByteBuffer view = buffer.duplicate();
+        byte[] value = new byte[view.getInt(offset)];
+        view.position(offset + 4);
+        view.get(value);
+        return value;
+    }
+
+    public void remove(String key) {
+        index.remove(key);
+    }
+
+    public void forEach(BiConsumer<String, byte[]> consumer) {
+
+        index.keySet().forEach(key -> {
+            byte[] value = get(key);
+            if (value != null) {
+                consumer.accept(key, value);
+            }
+        });
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Unchecked carrier of the IOExceptions of the entry consumer.
+     */
+    private static final class SnapshotWriteException extends RuntimeException {
+
+        private SnapshotWriteException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.srilaxmi.cache.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log of the writes made to one local cache by all instances, against which a warm-start snapshot is checked when it
+ * is restored, see LocalCache.
+ *
+ * Every put and evict adds its keys, hashed like the keys of the snapshot, to the sorted set
+ * {@code <cache>:snapshot-writes}, scored with the time of the write, and every clear sets
+ * {@code <cache>:snapshot-cleared-at}. A restored snapshot then drops only the keys
+ * written since it was taken, and is only discarded as a whole when the cache was cleared meanwhile.
+ *
+ * Records are sent without waiting for their answer, so writes do not pay an extra round trip; a record that fails
+ * is logged and may leave one key stale in a snapshot until it expires. Records older than the snapshot max age
+ * cannot concern any snapshot that is still restored and are trimmed whenever the snapshots are written.
+ *
+ * Times are taken from the clock of every instance, so a snapshot is checked against the records made from a
+ * little before it was taken.
+ */
+@Slf4j
+public class LocalCacheWriteLog {
+
+    // Largest difference between the clocks of two instances that is tolerated
+    static final long CLOCK_SKEW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final String name;
+
+    // Written keys, scored with the time of their last write
+    private final RScoredSortedSet<String> writes;
+
+    private final RAtomicLong clearedAt;
+
+    public LocalCacheWriteLog(RedissonClient redissonClient, String name) {
+        this.name = name;
+        this.writes = redissonClient.getScoredSortedSet(name + ":snapshot-writes", StringCodec.INSTANCE);
+        this.clearedAt = redissonClient.getAtomicLong(name + ":snapshot-cleared-at");
+    }
+
+    public void recordWrite(String key) {
+
+        writes.addAsync(System.currentTimeMillis(), key).whenComplete((added, e) -> logFailure("write", e));
+    }
+
+    public void recordWrites(Collection<String> keys) {
+
+        Double now = (double) System.currentTimeMillis();
+        Map<String, Double> scores = new HashMap<>();
+        keys.forEach(key -> scores.put(key, now));
+        writes.addAllAsync(scores).whenComplete((added, e) -> logFailure("write", e));
+    }
+
+    public void recordClear() {
+
+        clearedAt.setAsync(System.currentTimeMillis()).whenComplete((set, e) -> logFailure("clear", e));
+    }
+
+    /**
+     * Whether the cache may have been cleared since the given time.
+     */
+    public boolean isClearedSince(long since) {
+        return clearedAt.get() >= since - CLOCK_SKEW_MILLIS;
+    }
+
+    /**
+     * The keys which may have been written since the given time.
+     */
+    public Collection<String> getWrittenSince(long since) {
+        return writes.valueRange(since - CLOCK_SKEW_MILLIS, true, Double.POSITIVE_INFINITY, true);
+    }
+
+    /**
+     * Forgets the writes made before the given time.
+     */
+    public void trim(long before) {
+
+        writes.removeRangeByScoreAsync(Double.NEGATIVE_INFINITY, true, before - CLOCK_SKEW_MILLIS, false)
+                .whenComplete((removed, e) -> logFailure("trim", e));
+    }
+
+    private void logFailure(String operation, Throwable e) {
+
+        if (e != null) {
+            log.warn("Failed to record {} in the snapshot write log of {} cache", operation, name, e);
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.github.srilaxmi.cache.service;
+
+import com.github.srilaxmi.cache.configuration.MongoStoreProperties;
+import com.github.srilaxmi.cache.metrics.CacheMetrics;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mongo collections behind the sets listed under {@code cache.mongo}, see MongoStoreProperties.
+ *
+ * Read-through: ReactiveRedisCache loads the keys it misses from the collection of the set.
+ *
+ * Write-behind: puts are queued per set and coalesced per key, so that only the last value of a key written between
+ * two flushes goes to mongo. A queue is flushed as one ordered bulk write once {@code flush-size} keys are waiting and
+ * every {@code flush-interval}; at most one flush per set runs at a time, which keeps the writes of a key in order.
+ * When {@code queue-size} keys are waiting, puts of other keys wait for the running flush, which pushes back on the
+ * writers instead of growing the queue.
+ *
+ * A failed flush puts its keys back into the queue unless they were written again meanwhile, and the next flush waits
+ * for {@code retry-backoff}, doubled with every failed flush in a row. When a bulk write fails on one document, the
+ * keys written before it are done and only the failed key counts an attempt; any other failure counts one for every
+ * key of the batch. A key which failed {@code max-attempts} flushes is dropped and counted as
+ * {@code cache.write-behind.dropped}, so that one document mongo keeps refusing cannot block the queue. Puts waiting
+ * for room in a full queue fail when the flush they waited for fails.
+ *
+ * Deletes only evict from the cache and are never written to mongo.
+ */
+@Slf4j
+@Component
+public class MongoStore {
+
+    @Autowired
+    private MongoStoreProperties properties;
+
+    // Injected directly rather than looked up, so that the mongo client is only closed once shutdown has flushed
+    @Autowired
+    private ReactiveMongoOperations mongoOperations;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    private final Map<String, WriteBehindQueue> queues = new ConcurrentHashMap<>();
+
+    private volatile QueryMapper queryMapper;
+
+    /**
+     * Every document has its own {@code _id}, so several documents cannot share one as their key.
+     */
+    @PostConstruct
+    public void validate() {
+
+        properties.getSets().forEach((set, settings) -> {
+            if (settings.isMultiple() && "_id".equals(settings.getKeyField())) {
+                throw new IllegalStateException("Set " + set + " holds multiple documents per key and needs a key-field other than _id");
+            }
+        });
+    }
+
+    public boolean isReadThrough(String set) {
+
+        MongoStoreProperties.Settings settings = properties.getSettings(set);
+        return settings != null && settings.isReadThrough();
+    }
+
+    public boolean isWriteBehind(String set) {
+
+        MongoStoreProperties.Settings settings = properties.getSettings(set);
+        return settings != null && settings.isWriteBehind();
+    }
+
+    /**
+     * Loads the value of a key: its document, or the list of its documents for sets of multiple documents. Empty when
+     * the collection has none.
+     */
+    public Mono<Object> load(String set, String key) {
+
+        MongoStoreProperties.Settings settings = properties.getSettings(set);
+        Flux<Document> documents = mongo()
+                .find(Query.query(Criteria.where(settings.getKeyField()).is(key)), Document.class, collectionOf(set, settings))
+                .map(MongoStore::withoutId);
+        Mono<Object> value = settings.isMultiple()
+                ? documents.collectList().filter(list -> !list.isEmpty()).cast(Object.class)
+                : documents.next().cast(Object.class);
+        return cacheMetrics.record(CacheMetrics.REACTIVE, set, "readThrough", value);
+    }
+
+    /**
+     * Loads the values of many keys with one query. Keys without documents are left out.
+     */
+    @SuppressWarnings("unchecked")
+    public Mono<Map<String, Object>> loadAll(String set, Collection<String> keys) {
+
+        MongoStoreProperties.Settings settings = properties.getSettings(set);
+        String keyField = settings.getKeyField();
+        Mono<Map<String, Object>> values = mongo()
+                .find(Query.query(Criteria.where(keyField).in(keys)), Document.class, collectionOf(set, settings))
+                .collect(HashMap::new, (Map<String, Object> loaded, Document document) -> {
+                    String key = String.valueOf(document.get(keyField));
+                    Document value = withoutId(document);
+                    if (settings.isMultiple()) {
+                        ((List<Document>) loaded.computeIfAbsent(key, ignored -> new ArrayList<Document>())).add(value);
+                    } else {
+                        loaded.put(key, value);
+                    }
+                });
+        return cacheMetrics.record(CacheMetrics.REACTIVE, set, "readThrough", values);
+    }
+
+    /**
+     * Queues a put for mongo. Completes right away while the queue of the set has room, otherwise once a flush has
+     * made room for it.
+     */
+    public Mono<Void> enqueue(String set, String key, Object value) {
+
+        return Mono.defer(() -> {
+            WriteBehindQueue queue = getQueue(set);
+            Object document = toStored(queue.settings, set, value);
+            if (queue.offer(key, document)) {
+                return Mono.empty();
+            }
+            return queue.flush()
+                    .onErrorMap(e -> new IllegalStateException(
+                            "Write-behind queue of set " + set + " is full and could not be flushed", e))
+                    .then(enqueue(set, key, value));
+        });
+    }
+
+    private WriteBehindQueue getQueue(String set) {
+
+        WriteBehindQueue queue = queues.get(set);
+        if (queue != null) {
+            return queue;
+        }
+        return queues.computeIfAbsent(set, name -> new WriteBehindQueue(name, properties.getSettings(name)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+
+        queues.values().forEach(queue -> {
+            queue.timer.dispose();
+            try {
+                queue.flush().block(Duration.ofSeconds(30));
+            } catch (Exception e) {
+                log.error("Failed to flush pending writes of set :: {} :: {} keys lost", queue.set, queue.size(), e);
+            }
+        });
+    }
+
+    private ReactiveMongoOperations mongo() {
+        return mongoOperations;
+    }
+
+    /**
+     * The filter matching the documents of a key, mapped like the queries of load and loadAll: a key of the {@code _id}
+     * field that is a valid ObjectId in hex matches that ObjectId, so writes reach the documents reads find.
+     */
+    private Document keyFilter(String keyField, String key) {
+
+        QueryMapper mapper = queryMapper;
+        if (mapper == null) {
+            mapper = new QueryMapper(mongo().getConverter());
+            queryMapper = mapper;
+        }
+        return mapper.getMappedObject(Query.query(Criteria.where(keyField).is(key)).getQueryObject(), (MongoPersistentEntity<?>) null);
+    }
+
+    private static String collectionOf(String set, MongoStoreProperties.Settings settings) {
+        return settings.getCollection() == null || settings.getCollection().isEmpty() ? set : settings.getCollection();
+    }
+
+    // The _id of a document is not part of the cached value
+    private static Document withoutId(Document document) {
+        document.remove("_id");
+        return document;
+    }
+
+    /**
+     * Converts a put value into what is written to mongo: a document, or a list of documents for sets of multiple
+     * documents.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object toStored(MongoStoreProperties.Settings settings, String set, Object value) {
+
+        if (settings.isMultiple()) {
+            if (!(value instanceof List)) {
+                throw new IllegalArgumentException("Write-behind set " + set + " takes lists of documents");
+            }
+            List<Document> documents = new ArrayList<>();
+            for (Object item : (List<Object>) value) {
+                documents.add(toDocument(set, item));
+            }
+            return documents;
+        }
+        return toDocument(set, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Document toDocument(String set, Object value) {
+
+        if (value instanceof Document) {
+            return new Document((Document) value);
+        }
+        if (value instanceof Map) {
+            return new Document((Map<String, Object>) value);
+        }
+        throw new IllegalArgumentException("Write-behind set " + set + " takes documents, not " + value.getClass().getName());
+    }
+
+    private final class WriteBehindQueue {
+
+        private final String set;
+        private final MongoStoreProperties.Settings settings;
+        private final Counter flushedKeys;
+        private final Counter failedFlushes;
+        private final Counter droppedKeys;
+        private final Disposable timer;
+
+        // Latest value per key, in order of first write since the last flush
+        private LinkedHashMap<String, Object> pending = new LinkedHashMap<>();
+
+        // Failed flushes of the keys which are pending again after a failure
+        private final Map<String, Integer> attempts = new HashMap<>();
+
+        // The running flush, shared by everyone waiting for it; null when none runs
+        private Mono<Void> inFlight;
+
+        private int failedInARow;
+
+        // No flush starts before this time (System.nanoTime) after a failed one
+        private long retryAt = System.nanoTime();
+
+        private WriteBehindQueue(String set, MongoStoreProperties.Settings settings) {
+            this.set = set;
+            this.settings = settings;
+            this.flushedKeys = cacheMetrics.getMeterRegistry().counter("cache.write-behind.flushed", "set", set);
+            this.failedFlushes = cacheMetrics.getMeterRegistry().counter("cache.write-behind.failed", "set", set);
+            this.droppedKeys = cacheMetrics.getMeterRegistry().counter("cache.write-behind.dropped", "set", set);
+            Gauge.builder("cache.write-behind.pending", this, WriteBehindQueue::size)
+                    .tag("set", set)
+                    .register(cacheMetrics.getMeterRegistry());
+            this.timer = Flux.interval(settings.getFlushInterval())
+                    .onBackpressureDrop()
+                    .concatMap(tick -> flush().onErrorResume(e -> Mono.empty()), 1)
+                    .subscribe();
+        }
+
+        synchronized boolean offer(String key, Object document) {
+
+            if (pending.size() >= settings.getQueueSize() && !pending.containsKey(key)) {
+                return false;
+            }
+            pending.put(key, document);
+            // A new value gets a fresh set of attempts
+            attempts.remove(key);
+            if (pending.size() >= settings.getFlushSize() && inFlight == null && System.nanoTime() - retryAt >= 0) {
+                flush().subscribe(ignored -> {}, e -> {});
+            }
+            return true;
+        }
+
+        synchronized int size() {
+            return pending.size();
+        }
+
+        /**
+         * Writes the pending keys, or joins the flush already running. Waits for the backoff after a failed flush, and
+         * fails when the flush does.
+         */
+        synchronized Mono<Void> flush() {
+
+            if (inFlight != null) {
+                return inFlight;
+            }
+            if (pending.isEmpty()) {
+                return Mono.empty();
+            }
+            long backoff = retryAt - System.nanoTime();
+            if (backoff > 0) {
+                return Mono.delay(Duration.ofNanos(backoff)).then(Mono.defer(this::flush));
+            }
+            Map<String, Object> batch = pending;
+            pending = new LinkedHashMap<>();
+            // Key of every bulk write model, to tell which key a failed model belongs to
+            List<String> modelKeys = new ArrayList<>();
+            inFlight = write(batch, modelKeys)
+                    .doOnSuccess(ignored -> succeeded(batch))
+                    .doOnError(e -> failed(batch, modelKeys, e))
+                    .doFinally(signal -> {
+                        synchronized (this) {
+                            inFlight = null;
+                        }
+                    })
+                    .cache();
+            return inFlight;
+        }
+
+        private synchronized void succeeded(Map<String, Object> batch) {
+
+            flushedKeys.increment(batch.size());
+            failedInARow = 0;
+            batch.keySet().forEach(key -> {
+                if (!pending.containsKey(key)) {
+                    attempts.remove(key);
+                }
+            });
+        }
+
+        /**
+         * Puts the keys of a failed flush back in front of the queue, except for those written since and those which
+         * have used up their attempts, and sets the backoff of the next flush.
+         */
+        private synchronized void failed(Map<String, Object> batch, List<String> modelKeys, Throwable e) {
+
+            failedFlushes.increment();
+            failedInARow++;
+            // Doubled up to 64 times, so that the queue keeps being retried while mongo is down
+            long backoff = settings.getRetryBackoff().toNanos() << Math.min(failedInARow - 1, 6);
+            retryAt = System.nanoTime() + backoff;
+
+            // An ordered bulk write stops at its first failed model, the keys of the models before it are written
+            Set<String> written = new HashSet<>();
+            String failedKey = null;
+            if (e instanceof MongoBulkWriteException && !((MongoBulkWriteException) e).getWriteErrors().isEmpty()) {
+                int failedIndex = ((MongoBulkWriteException) e).getWriteErrors().get(0).getIndex();
+                failedKey = modelKeys.get(failedIndex);
+                written.addAll(modelKeys.subList(0, failedIndex));
+                written.remove(failedKey);
+            }
+            flushedKeys.increment(written.size());
+            written.forEach(attempts::remove);
+
+            LinkedHashMap<String, Object> requeued = new LinkedHashMap<>();
+            List<String> dropped = new ArrayList<>();
+            for (Map.Entry<String, Object> entry : batch.entrySet()) {
+                String key = entry.getKey();
+                if (written.contains(key) || pending.containsKey(key)) {
+                    continue;
+                }
+                int attempt = failedKey == null || failedKey.equals(key)
+                        ? attempts.merge(key, 1, Integer::sum)
+                        : attempts.getOrDefault(key, 0);
+                if (attempt >= settings.getMaxAttempts()) {
+                    attempts.remove(key);
+                    dropped.add(key);
+                } else {
+                    requeued.put(key, entry.getValue());
+                }
+            }
+            requeued.putAll(pending);
+            pending = requeued;
+
+            log.error("Write-behind flush failed on set :: {} :: for {} keys, retrying in {} ms", set,
+                      batch.size() - written.size(), TimeUnit.NANOSECONDS.toMillis(backoff), e);
+            if (!dropped.isEmpty()) {
+                droppedKeys.increment(dropped.size());
+                log.error("Write-behind dropped keys of set :: {} :: after {} failed flushes :: {}",
+                          set, settings.getMaxAttempts(), dropped);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Mono<Void> write(Map<String, Object> batch, List<String> modelKeys) {
+
+            String keyField = settings.getKeyField();
+            List<WriteModel<Document>> models = new ArrayList<>();
+            batch.forEach((key, value) -> {
+                Document filter = keyFilter(keyField, key);
+                Object keyValue = filter.get(keyField);
+                if (settings.isMultiple()) {
+                    models.add(new DeleteManyModel<>(filter));
+                    modelKeys.add(key);
+                    for (Document document : (List<Document>) value) {
+                        models.add(new InsertOneModel<>(document.append(keyField, keyValue)));
+                        modelKeys.add(key);
+                    }
+                } else {
+                    models.add(new ReplaceOneModel<>(filter,
+                                                     ((Document) value).append(keyField, keyValue),
+                                                     new ReplaceOptions().upsert(true)));
+                    modelKeys.add(key);
+                }
+            });
+            return cacheMetrics.record(CacheMetrics.REACTIVE, set, "writeBehind", mongo()
+                    .getCollection(collectionOf(set, settings))
+                    .flatMap(collection -> Mono.from(collection.bulkWrite(models, new BulkWriteOptions().ordered(true)))))
+                    .then();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.github.srilaxmi.cache.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.srilaxmi.cache.configuration.NearCacheProperties;
+import com.google.gson.Gson;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.StatusListener;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-process copy of the stored bytes of hot redis sets, consulted by ReactiveRedisCache before going to
+ * redis.
+ *
+ * Every set gets its own Caffeine cache (W-TinyLFU admission) weighed by stored bytes. Writes through
+ * ReactiveRedisCache invalidate the written keys locally and publish them on a redisson topic so that all the other
+ * instances drop them too; a hot key is therefore stale for at most the topic delivery delay.
+ *
+ * Each set also carries a generation that is bumped on every invalidation. A value read from redis is only kept if no
+ * invalidation happened since the read was started, which stops a slow read from re-inserting a value that has just
+ * been overwritten.
+ */
+@Component
+@Slf4j
+public class NearCache {
+
+    private static final Gson gson = new Gson();
+
+    // Rough per-entry bookkeeping cost added to the weight of every entry
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    @Autowired
+    private NearCacheProperties nearCacheProperties;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final Map<String, Cache<String, byte[]>> caches = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private volatile RTopic topic;
+
+    /**
+     * Starts listening to invalidations published by the other instances. Called once, with the client used for
+     * the cached sets.
+     */
+    public void subscribe(RedissonClient redissonClient) {
+
+        if (nearCacheProperties.getSets().isEmpty()) {
+            return;
+        }
+
+        RTopic invalidationTopic = redissonClient.getTopic(nearCacheProperties.getInvalidationTopic(), StringCodec.INSTANCE);
+        invalidationTopic.addListener(String.class, (channel, message) -> onInvalidation(message));
+        invalidationTopic.addListener(new StatusListener() {
+            @Override
+            public void onSubscribe(String channel) {
+                // Invalidations published while we were not subscribed are lost, so start from scratch
+                log.info("NEAR CACHE :: subscribed to {}, clearing all near caches", channel);
+                caches.keySet().forEach(NearCache.this::invalidateLocally);
+            }
+
+            @Override
+            public void onUnsubscribe(String channel) {
+                log.warn("NEAR CACHE :: unsubscribed from {}", channel);
+            }
+        });
+        topic = invalidationTopic;
+    }
+
+    public boolean isEnabled(String set) {
+        return nearCacheProperties.getSets().containsKey(set);
+    }
+
+    public byte[] get(String set, String key) {
+        Cache<String, byte[]> cache = caches.get(set);
+        return cache == null ? null : cache.getIfPresent(key);
+    }
+
+    public long getGeneration(String set) {
+        return isEnabled(set) ? generation(set).get() : 0;
+    }
+
+    /**
+     * Keeps a value read from redis, unless the set was invalidated since the read started at the given generation.
+     */
+    public void put(String set, String key, byte[] value, long generation) {
+
+        if (!isEnabled(set)) {
+            return;
+        }
+        AtomicLong current = generation(set);
+        if (current.get() != generation) {
+            return;
+        }
+        Cache<String, byte[]> cache = getCache(set);
+        cache.put(key, value);
+        // An invalidation may have run between the check and the put
+        if (current.get() != generation) {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Drops the keys on this instance and publishes them to the other instances. Passing null keys drops the whole
+     * set. Publishing failures are logged and swallowed, the write itself has already succeeded at this point.
+     */
+    public Mono<Void> invalidate(String set, Collection<String> keys) {
+
+        if (!isEnabled(set)) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            invalidateLocally(set, keys);
+
+            RTopic invalidationTopic = topic;
+            if (invalidationTopic == null) {
+                return Mono.empty();
+            }
+            String message = gson.toJson(new Invalidation(instanceId, set, keys == null ? null : List.copyOf(keys)));
+            return Mono.fromCompletionStage(invalidationTopic.publishAsync(message))
+                    .onErrorResume(e -> {
+                        log.error("NEAR CACHE :: failed to publish invalidation for set :: {}", set, e);
+                        return Mono.empty();
+                    })
+                    .then();
+        });
+    }
+
+    private void onInvalidation(String message) {
+
+        Invalidation invalidation = gson.fromJson(message, Invalidation.class);
+        if (instanceId.equals(invalidation.getOrigin())) {
+            return;
+        }
+        invalidateLocally(invalidation.getSet(), invalidation.getKeys());
+    }
+
+    private void invalidateLocally(String set) {
+        invalidateLocally(set, null);
+    }
+
+    private void invalidateLocally(String set, Collection<String> keys) {
+
+        generation(set).incrementAndGet();
+        Cache<String, byte[]> cache = caches.get(set);
+        if (cache == null) {
+            return;
+        }
+        if (keys == null) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidateAll(keys);
+        }
+    }
+
+    private AtomicLong generation(String set) {
+        return generations.computeIfAbsent(set, name -> new AtomicLong());
+    }
+
+    private Cache<String, byte[]> getCache(String set) {
+
+        return caches.computeIfAbsent(set, name -> {
+            NearCacheProperties.Settings settings = nearCacheProperties.getSets().get(name);
+            log.info("NEAR CACHE :: creating near cache for set :: {} :: maxBytes :: {}", name, settings.getMaxBytes());
+            return Caffeine.newBuilder()
+                    .maximumWeight(settings.getMaxBytes())
+                    .weigher((String key, byte[] value) -> key.length() * 2 + value.length + ENTRY_OVERHEAD_BYTES)
+                    .expireAfterWrite(settings.getExpireAfterWrite())
+                    .build();
+        });
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    private static class Invalidation {
+
+        private String origin;
+        private String set;
+        // null means the whole set
+        private List<String> keys;
+    }
+}
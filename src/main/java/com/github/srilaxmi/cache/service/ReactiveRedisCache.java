@@ -1,18 +1,52 @@
 package com.github.srilaxmi.cache.service;
 
+import com.github.srilaxmi.cache.backend.CacheBackend;
+import com.github.srilaxmi.cache.backend.Expiry;
+import com.github.srilaxmi.cache.backend.RedisCacheBackend;
+import com.github.srilaxmi.cache.codec.ValueCodecRegistry;
+import com.github.srilaxmi.cache.configuration.ExpiryProperties;
+import com.github.srilaxmi.cache.configuration.ListProperties;
 import com.github.srilaxmi.cache.configuration.RedissonCustomClient;
+import com.github.srilaxmi.cache.constants.BulkKeyStatus;
+import com.github.srilaxmi.cache.dto.CacheEntry;
+import com.github.srilaxmi.cache.dto.KeyStatus;
+import com.github.srilaxmi.cache.metrics.CacheMetrics;
+import com.github.srilaxmi.cache.metrics.HotKeyTracker;
+import com.github.srilaxmi.cache.util.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.Document;
-import com.google.gson.Gson;
-import org.redisson.api.*;
+import org.redisson.RedissonObject;
+import org.redisson.api.LocalCachedMapOptions;
+import org.redisson.api.RLocalCachedMap;
+import org.redisson.api.RTopic;
+import org.redisson.cache.LocalCachedMessageCodec;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import com.google.common.reflect.TypeToken;
 
+import javax.annotation.PostConstruct;
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,64 +56,427 @@ public class ReactiveRedisCache {
     @Autowired
     private RedissonCustomClient redissonCustomClient;
 
-    private static final Gson gson = new Gson();
+    @Autowired
+    private ValueCodecRegistry codecRegistry;
 
-    private RedissonClient redissonClient;
+    @Autowired
+    private NearCache nearCache;
 
-    private RedissonReactiveClient getReactiveRedisClient() {
+    @Autowired
+    private MeterRegistry meterRegistry;
 
-        if (redissonClient != null) {
-            return redissonClient
-                    .reactive();
-        }
+    @Autowired
+    private CacheBackend backend;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    @Autowired
+    private HotKeyTracker hotKeyTracker;
+
+    @Autowired
+    private ExpiryProperties expiryProperties;
+
+    @Autowired
+    private MongoStore mongoStore;
+
+    @Autowired
+    private ListProperties listProperties;
+
+    // Redis reads in flight, shared by concurrent callers of the same key
+    private final SingleFlight<StoredKey, byte[]> storedReads = new SingleFlight<>();
+
+    // Decodes in flight, shared by concurrent callers of the same key and type
+    private final SingleFlight<DecodedKey, Object> decodedReads = new SingleFlight<>();
+
+    // cache.reads.coalesced per set, registered once
+    private final Map<String, Counter> coalescedReads = new ConcurrentHashMap<>();
 
-        redissonClient = redissonCustomClient.getRedissonClient();
+    private static final Type DOCUMENT_LIST_TYPE = new TypeToken<List<Document>>() {
+    }.getType();
 
-        return redissonClient.reactive();
+    // Number of keys fetched by a single HMGET in the bulk read path
+    @Value("${cache.bulk.chunk-size:500}")
+    private int bulkChunkSize;
+
+    // Number of bulk chunks that may be in flight against redis at the same time
+    @Value("${cache.bulk.concurrency:4}")
+    private int bulkConcurrency;
+
+    // Entries fetched per HSCAN page by scan when the caller does not ask for a page size
+    @Value("${cache.scan.page-size:1000}")
+    private int scanPageSize;
+
+    @PostConstruct
+    public void validate() {
+
+        listProperties.getSets().forEach((set, settings) -> {
+            // An empty list would be stored natively, and a native list cannot be written without elements
+            if (settings.getNativeThreshold() < 1) {
+                throw new IllegalStateException("Set " + set + " needs a native-threshold of at least 1 under"
+                                                        + " cache.lists");
+            }
+        });
     }
 
     public RLocalCachedMap<Object, Object> getLocalCachedMap(String name, LocalCachedMapOptions<Object, Object> options) {
 
-        return redissonCustomClient.getRedissonClient().getLocalCachedMap(name, options);
+        return redissonCustomClient.getRedissonClient().getLocalCachedMap(name, RedisCacheBackend.VALUE_CODEC, options);
+    }
+
+    /**
+     * The topic on which the local cached map of the given name sends its invalidations, update and clear messages to
+     * the other instances.
+     */
+    public RTopic getLocalCachedMapTopic(String name) {
+
+        return redissonCustomClient.getRedissonClient()
+                .getTopic(RedissonObject.suffixName(name, "topic"), LocalCachedMessageCodec.INSTANCE);
+    }
+
+    public boolean isExpiring(String set) {
+        return expiryProperties.isExpiring(set);
     }
 
-    private RMapReactive<String, String> getMap(String set) {
-        return getReactiveRedisClient().getMap(set);
+    public boolean supportsMaxIdle() {
+        return backend.supportsMaxIdle();
+    }
+
+    /**
+     * The expiry of a write, with the given or the configured ttl and max idle time for expiring sets and null for the
+     * other sets. A ttl or max idle time for a set which does not expire is an error, since its entries cannot hold one.
+     */
+    private Expiry expiryOf(String set, Duration ttl, Duration maxIdle) {
+
+        ExpiryProperties.Settings settings = expiryProperties.getSettings(set);
+        if (settings == null) {
+            if (ttl != null || maxIdle != null) {
+                throw new IllegalArgumentException("Set " + set + " does not support expiry");
+            }
+            return null;
+        }
+        return new Expiry(settings, ttl, maxIdle);
+    }
+
+    /**
+     * Reads the stored bytes of a key, from the near cache if the set has one. Concurrent redis reads of the same key
+     * are collapsed into one.
+     */
+    private Mono<byte[]> getStored(String set, String key) {
+
+        return Mono.defer(() -> {
+            byte[] cached = nearCache.get(set, key);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            return storedReads.execute(new StoredKey(set, key), () -> fetchStored(set, key), () -> addCoalescedReads(set, 1));
+        }).doOnNext(value -> hotKeyTracker.record(set, key, value.length));
+    }
+
+    /**
+     * Reads the stored bytes of many keys with one HMGET. Keys found in the near cache or already being read by
+     * another caller are not fetched again.
+     */
+    private Mono<Map<String, byte[]>> getStored(String set, List<String> keys) {
+
+        return Mono.defer(() -> {
+            Map<String, byte[]> values = new HashMap<>();
+            List<StoredKey> missing = new ArrayList<>();
+            for (String key : keys) {
+                byte[] cached = nearCache.get(set, key);
+                if (cached != null) {
+                    values.put(key, cached);
+                } else {
+                    missing.add(new StoredKey(set, key));
+                }
+            }
+            if (missing.isEmpty()) {
+                return Mono.just(values);
+            }
+            return storedReads.executeAll(missing, owned -> fetchStored(set, owned), joined -> addCoalescedReads(set, joined))
+                    .map(fetched -> {
+                        fetched.forEach((storedKey, value) -> values.put(storedKey.getKey(), value));
+                        return values;
+                    });
+        }).doOnNext(values -> values.forEach((key, value) -> hotKeyTracker.record(set, key, value.length)));
+    }
+
+    /**
+     * The backend read behind {@link #getStored(String, String)}. The near cache generation is taken when the read
+     * starts, so a value is not kept if the key was written while it was being read.
+     */
+    private Mono<byte[]> fetchStored(String set, String key) {
+
+        if (!nearCache.isEnabled(set)) {
+            return readThrough(set, key, backend.get(set, key));
+        }
+        long generation = nearCache.getGeneration(set);
+        return readThrough(set, key, backend.get(set, key))
+                .doOnNext(value -> nearCache.put(set, key, value, generation));
+    }
+
+    private Mono<Map<StoredKey, byte[]>> fetchStored(String set, Set<StoredKey> keys) {
+
+        Set<String> names = keys.stream()
+                .map(StoredKey::getKey)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        long generation = nearCache.getGeneration(set);
+        return readThrough(set, names, backend.getAll(set, names))
+                .map(fetched -> {
+                    Map<StoredKey, byte[]> values = new HashMap<>();
+                    fetched.forEach((key, value) -> {
+                        nearCache.put(set, key, value, generation);
+                        values.put(new StoredKey(set, key), value);
+                    });
+                    return values;
+                });
+    }
+
+    /**
+     * Falls back to the mongo collection of read-through sets when the key is not cached, and caches what it finds.
+     * The loaded value is only cached if the key is still absent, so that it never overwrites a newer put.
+     */
+    private Mono<byte[]> readThrough(String set, String key, Mono<byte[]> cached) {
+
+        if (!mongoStore.isReadThrough(set)) {
+            return cached;
+        }
+        return cached.switchIfEmpty(Mono.defer(() -> mongoStore.load(set, key)
+                .flatMap(value -> {
+                    byte[] stored = codecRegistry.encode(set, value);
+                    return backend.putIfAbsent(set, key, stored, expiryOf(set, null, null)).thenReturn(stored);
+                })));
+    }
+
+    private Mono<Map<String, byte[]>> readThrough(String set, Set<String> keys, Mono<Map<String, byte[]>> cached) {
+
+        if (!mongoStore.isReadThrough(set)) {
+            return cached;
+        }
+        return cached.flatMap(fetched -> {
+            List<String> missing = keys.stream()
+                    .filter(key -> !fetched.containsKey(key))
+                    .collect(Collectors.toList());
+            if (missing.isEmpty()) {
+                return Mono.just(fetched);
+            }
+            Map<String, byte[]> values = new HashMap<>(fetched);
+            return mongoStore.loadAll(set, missing)
+                    .flatMapMany(loaded -> Flux.fromIterable(loaded.entrySet()))
+                    .flatMap(entry -> {
+                        byte[] stored = codecRegistry.encode(set, entry.getValue());
+                        return backend.putIfAbsent(set, entry.getKey(), stored, expiryOf(set, null, null))
+                                .thenReturn(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), stored));
+                    }, bulkConcurrency)
+                    .doOnNext(entry -> values.put(entry.getKey(), entry.getValue()))
+                    .then(Mono.just(values));
+        });
+    }
+
+    /**
+     * Queues a put for the mongo collection of write-behind sets.
+     */
+    private Mono<Void> writeBehind(String set, String key, Object value) {
+
+        return mongoStore.isWriteBehind(set) ? mongoStore.enqueue(set, key, value) : Mono.empty();
+    }
+
+    /**
+     * Reads and decodes a key, sharing both the redis read and the decoded object with concurrent callers asking for
+     * the same key and type. Callers must therefore treat the returned object as read-only.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Mono<T> getDecoded(String set, String key, Type type) {
+
+        Mono<Object> decoded = decodedReads.execute(
+                new DecodedKey(set, key, type),
+                () -> getStored(set, key).map(value -> codecRegistry.decode(set, value, type)),
+                () -> addCoalescedReads(set, 1)
+        );
+        return (Mono<T>) decoded;
+    }
+
+    private void addCoalescedReads(String set, int reads) {
+
+        Counter counter = coalescedReads.get(set);
+        if (counter == null) {
+            counter = coalescedReads.computeIfAbsent(set, name -> meterRegistry.counter("cache.reads.coalesced", "set", name));
+        }
+        counter.increment(reads);
     }
 
     public <T> Mono<T> get(String set, String key, Class<T> tClass) {
 
-        return getMap(set)
-                .get(key)
-                .map(value -> gson.fromJson(value, tClass));
+        return cacheMetrics.recordRead(CacheMetrics.REACTIVE, set, "get", getDecoded(set, key, tClass));
     }
 
+    /**
+     * Reads a whole list. Lists of list sets which are not stored as a single value are read from their native list.
+     */
     public Mono<List<Document>> getToList(String set, String key) {
 
-        return getMap(set)
-                .get(key)
-                .map(value -> gson.fromJson(value, new TypeToken<List<Document>>() {
-                }.getType()));
+        Mono<List<Document>> documents = getDecoded(set, key, DOCUMENT_LIST_TYPE);
+        if (listProperties.isListSet(set)) {
+            documents = documents.switchIfEmpty(Mono.defer(() -> getNativeList(set, key, 0, Long.MAX_VALUE))
+                                                        .filter(list -> !list.isEmpty()));
+        }
+        return cacheMetrics.recordRead(CacheMetrics.REACTIVE, set, "get", documents);
+    }
+
+    /**
+     * Reads up to limit documents of a list, starting at offset. Native lists (see ListProperties) only transfer and
+     * decode the documents asked for; lists stored as a single value are read whole and sliced. A range past the end
+     * of the list is empty.
+     */
+    public Mono<List<Document>> getListRange(String set, String key, long offset, int limit) {
+
+        Mono<List<Document>> stored = this.<List<Document>>getDecoded(set, key, DOCUMENT_LIST_TYPE)
+                .map(documents -> slice(documents, offset, limit));
+        Mono<List<Document>> range = !listProperties.isListSet(set) ? stored
+                : getNativeList(set, key, offset, offset + limit)
+                        .flatMap(documents -> documents.isEmpty() ? stored.defaultIfEmpty(documents) : Mono.just(documents));
+        return cacheMetrics.recordRead(CacheMetrics.REACTIVE, set, "getRange", range);
+    }
+
+    /**
+     * Number of documents of a list, 0 when the key is absent. Native lists answer without reading any document.
+     */
+    public Mono<Long> getListLength(String set, String key) {
+
+        Mono<Long> stored = this.<List<Document>>getDecoded(set, key, DOCUMENT_LIST_TYPE)
+                .map(documents -> (long) documents.size())
+                .defaultIfEmpty(0L);
+        Mono<Long> length = !listProperties.isListSet(set) ? stored
+                : backend.getListLength(set, key).flatMap(nativeLength -> nativeLength > 0 ? Mono.just(nativeLength) : stored);
+        return cacheMetrics.record(CacheMetrics.REACTIVE, set, "length", length);
+    }
+
+    /**
+     * Appends documents to a list, creating it when absent, and returns its new length.
+     *
+     * Native lists only send the new documents. Lists stored as a single value are read, extended and written back
+     * through {@link #putFromList(String, Map)}, which moves them to a native list once they reach the threshold of a
+     * list set; such rewrites are not atomic, so concurrent appends to a short list may lose documents. Appends to a
+     * write-behind set queue the whole list for mongo.
+     */
+    public Mono<Long> appendToList(String set, String key, List<Document> documents) {
+
+        Mono<Long> rewrite = Mono.defer(() -> this.<List<Document>>getDecoded(set, key, DOCUMENT_LIST_TYPE)
+                .defaultIfEmpty(List.of())
+                .flatMap(current -> {
+                    List<Document> appended = new ArrayList<>(current);
+                    appended.addAll(documents);
+                    return putFromList(set, Map.of(key, appended)).thenReturn((long) appended.size());
+                }));
+        if (!listProperties.isListSet(set)) {
+            return cacheMetrics.record(CacheMetrics.REACTIVE, set, "append", rewrite);
+        }
+        Mono<Long> append = backend.getListLength(set, key)
+                .flatMap(length -> length == 0 ? rewrite : backend.appendToList(set, key, encodeElements(set, documents))
+                        .flatMap(appended -> !mongoStore.isWriteBehind(set) ? Mono.just(appended)
+                                : getNativeList(set, key, 0, Long.MAX_VALUE)
+                                        .flatMap(list -> writeBehind(set, key, list))
+                                        .thenReturn(appended)));
+        return cacheMetrics.record(CacheMetrics.REACTIVE, set, "append", append);
+    }
+
+    private Mono<List<Document>> getNativeList(String set, String key, long from, long to) {
+
+        return backend.getListRange(set, key, from, to)
+                .map(elements -> elements.stream()
+                        .map(element -> codecRegistry.<Document>decode(set, element, Document.class))
+                        .collect(Collectors.toList()));
+    }
+
+    private List<byte[]> encodeElements(String set, List<Document> documents) {
+
+        return documents.stream()
+                .map(document -> codecRegistry.encode(set, document))
+                .collect(Collectors.toList());
+    }
+
+    private static List<Document> slice(List<Document> documents, long offset, int limit) {
+
+        int from = (int) Math.min(offset, documents.size());
+        int to = (int) Math.min(offset + limit, documents.size());
+        return new ArrayList<>(documents.subList(from, to));
+    }
+
+    /**
+     * Returns the value of a key as JSON text, for callers that only pass it on. Values stored as JSON come straight
+     * from redis (or the near cache) without being decoded.
+     */
+    public Mono<byte[]> getJson(String set, String key) {
+
+        return cacheMetrics.recordRead(CacheMetrics.REACTIVE, set, "get", getStored(set, key))
+                .map(codecRegistry::toJson);
     }
 
     public Mono<Map<String, List<Document>>> getToList(String set, Set<String> keys) {
 
-        return getMap(set)
-                .getAll(keys)
-                .map(values -> values.keySet()
-                        .stream()
-                        .collect(Collectors.toMap(
-                                key -> key,
-                                key -> gson.fromJson(values.get(key), new TypeToken<List<Document>>() {
-                                }.getType())
-                        ))
+        return this.<List<Document>>getAll(set, Flux.fromIterable(keys), DOCUMENT_LIST_TYPE)
+                .collectMap(CacheEntry::getKey, CacheEntry::getData);
+    }
+
+    public <T> Flux<CacheEntry<T>> getAll(String set, Collection<String> keys, Class<T> tClass) {
+
+        return getAll(set, Flux.fromIterable(keys), tClass);
+    }
+
+    public <T> Flux<CacheEntry<T>> getAll(String set, Flux<String> keys, Class<T> tClass) {
+
+        return getAll(set, keys, (Type) tClass);
+    }
+
+    /**
+     * Bulk read of many keys of a set.
+     *
+     * The keys are split into chunks of {@code cache.bulk.chunk-size} and every chunk is fetched with a single HMGET.
+     * Up to {@code cache.bulk.concurrency} chunks are in flight at once, so large key lists cost a handful of round
+     * trips instead of one per key. Entries are emitted chunk by chunk in request order and are only decoded when
+     * requested downstream, which lets callers stream the result without ever holding the whole batch in memory.
+     *
+     * Keys which are not present in the set are skipped.
+     */
+    private <T> Flux<CacheEntry<T>> getAll(String set, Flux<String> keys, Type type) {
+
+        CacheMetrics.OperationMetrics metrics = cacheMetrics.operation(CacheMetrics.REACTIVE, set, "getAll");
+        return keys
+                .buffer(bulkChunkSize)
+                .flatMapSequential(chunk -> Mono.defer(() -> {
+                                    long start = System.nanoTime();
+                                    return getStored(set, chunk)
+                                            .doOnSuccess(values -> metrics.bulk(start, values.size(),
+                                                                                Math.max(0, chunk.size() - values.size())))
+                                            .doOnError(e -> metrics.error(start));
+                                })
+                                .flatMapMany(values -> Flux.fromIterable(chunk)
+                                        .filter(values::containsKey)
+                                        .map(key -> new CacheEntry<T>(key, codecRegistry.<T>decode(set, values.get(key), type)))
+                                ),
+                        bulkConcurrency
                 );
     }
 
+    /**
+     * Streams all entries of a set whose key matches the glob-style pattern, or all of them when it is null.
+     *
+     * The set is walked with cursor pages of about pageSize entries (HSCAN for redis) and the next page is only
+     * fetched once the previous one has been consumed downstream, so a set of any size is streamed with the memory of
+     * one page. Values are decoded one by one as they are emitted. Entries written during the scan may or may not be
+     * returned, and the near cache is bypassed.
+     */
+    public <T> Flux<CacheEntry<T>> scan(String set, String pattern, Integer pageSize, Class<T> tClass) {
+
+        int count = pageSize != null && pageSize > 0 ? pageSize : scanPageSize;
+        log.info("Scanning set :: {} :: pattern {} :: page size {}", set, pattern, count);
+        return backend.scan(set, pattern, count)
+                .map(entry -> new CacheEntry<T>(entry.getKey(), codecRegistry.<T>decode(set, entry.getValue(), tClass)));
+    }
+
     public Mono<Integer> getKeysCount(String set) {
 
-        return getMap(set)
-                .size();
+        return cacheMetrics.record(CacheMetrics.REACTIVE, set, "count", backend.size(set));
     }
 
     public Mono<Boolean> put(
@@ -88,23 +485,38 @@ public class ReactiveRedisCache {
             Object value
     ) {
 
-        return getMap(set).fastPut(key, gson.toJson(value));
+        return put(set, key, value, null, null);
     }
 
+    /**
+     * Writes a value into an expiring set with its own ttl and max idle time; null falls back to the ones configured
+     * for the set.
+     */
     public Mono<Boolean> put(
             String set,
-            Map<String, Document> keyValueMap
+            String key,
+            Object value,
+            Duration ttl,
+            Duration maxIdle
     ) {
 
-        Map<String, String> serialisedData = keyValueMap.keySet()
-                .stream()
-                .collect(Collectors.toMap(
-                        key -> key,
-                        key -> gson.toJson(keyValueMap.get(key))
-                ));
+        Mono<Boolean> put = Mono.defer(() -> {
+            byte[] stored = codecRegistry.encode(set, value);
+            hotKeyTracker.record(set, key, stored.length);
+            return backend.put(set, key, stored, expiryOf(set, ttl, maxIdle));
+        });
+        return cacheMetrics.record(CacheMetrics.REACTIVE, set, "put", put)
+                .flatMap(created -> invalidate(set, List.of(key)).thenReturn(created))
+                .flatMap(created -> writeBehind(set, key, value).thenReturn(created));
+    }
 
-        return getMap(set).putAll(serialisedData)
-                .thenReturn(true);
+    public Mono<Boolean> put(
+            String set,
+            Map<String, Document> keyValueMap
+    ) {
+
+        return putAll(set, toEntries(keyValueMap))
+                .all(keyStatus -> keyStatus.getStatus() != BulkKeyStatus.FAILED);
     }
 
     public Mono<Boolean> putFromList(
@@ -112,15 +524,108 @@ public class ReactiveRedisCache {
             Map<String, List<Document>> keyValueMap
     ) {
 
-        Map<String, String> serialisedData = keyValueMap.keySet()
-                .stream()
-                .collect(Collectors.toMap(
-                        key -> key,
-                        key -> gson.toJson(keyValueMap.get(key))
-                ));
+        return putFromList(set, keyValueMap, null, null);
+    }
 
-        return getMap(set).putAll(serialisedData)
-                .thenReturn(true);
+    /**
+     * Writes lists as single values. In list sets (see ListProperties) lists reaching the threshold of the set are
+     * written as native lists instead, and every key only keeps the format it was last written in.
+     */
+    public Mono<Boolean> putFromList(
+            String set,
+            Map<String, List<Document>> keyValueMap,
+            Duration ttl,
+            Duration maxIdle
+    ) {
+
+        ListProperties.Settings settings = listProperties.getSettings(set);
+        if (settings == null) {
+            return putAll(set, toEntries(keyValueMap), ttl, maxIdle)
+                    .all(keyStatus -> keyStatus.getStatus() != BulkKeyStatus.FAILED);
+        }
+
+        Map<String, List<Document>> single = new LinkedHashMap<>();
+        Map<String, List<Document>> lists = new LinkedHashMap<>();
+        keyValueMap.forEach((key, documents) ->
+                (documents.size() >= settings.getNativeThreshold() ? lists : single).put(key, documents));
+
+        Mono<Boolean> singleWritten = single.isEmpty() ? Mono.just(true)
+                : putAll(set, toEntries(single), ttl, maxIdle)
+                        .all(keyStatus -> keyStatus.getStatus() != BulkKeyStatus.FAILED)
+                        .flatMap(written -> backend.removeLists(set, single.keySet()).thenReturn(written));
+        Mono<Boolean> listsWritten = Flux.fromIterable(lists.entrySet())
+                .flatMap(entry -> putNativeList(set, entry.getKey(), entry.getValue(), ttl), bulkConcurrency)
+                .then(Mono.just(true));
+        return singleWritten.zipWith(listsWritten, Boolean::logicalAnd);
+    }
+
+    /**
+     * Replaces the native list of a key and then drops its single value, if any. Native lists take the ttl of
+     * expiring sets, but no max idle time.
+     */
+    private Mono<Void> putNativeList(String set, String key, List<Document> documents, Duration ttl) {
+
+        Mono<Void> write = Mono.defer(() -> {
+            Expiry expiry = expiryOf(set, ttl, null);
+            long ttlMillis = expiry == null ? 0 : expiry.nextTtlMillis();
+            return backend.replaceList(set, key, encodeElements(set, documents), ttlMillis);
+        });
+        return cacheMetrics.record(CacheMetrics.REACTIVE, set, "putList", write)
+                .then(backend.remove(set, List.of(key)))
+                .then(invalidate(set, List.of(key)))
+                .then(writeBehind(set, key, documents));
+    }
+
+    /**
+     * Bulk write of many entries of a set.
+     *
+     * Entries are serialised and written chunk by chunk: every chunk of {@code cache.bulk.chunk-size} entries is sent
+     * to the backend at once (one pipelined batch of HSETs for redis) and at most {@code cache.bulk.concurrency} chunks
+     * are in flight. Only the
+     * chunks in flight are held in memory, so the input can be streamed straight from the request body.
+     *
+     * One status is emitted per key. A failed chunk marks all its keys as FAILED and the remaining chunks
+     * are still written.
+     */
+    public <T> Flux<KeyStatus> putAll(String set, Flux<CacheEntry<T>> entries) {
+
+        return putAll(set, entries, null, null);
+    }
+
+    /**
+     * {@link #putAll(String, Flux)} into an expiring set, every entry getting its own jittered ttl.
+     */
+    public <T> Flux<KeyStatus> putAll(String set, Flux<CacheEntry<T>> entries, Duration ttl, Duration maxIdle) {
+
+        Expiry expiry;
+        try {
+            expiry = expiryOf(set, ttl, maxIdle);
+        } catch (IllegalArgumentException e) {
+            return Flux.error(e);
+        }
+        return entries
+                .buffer(bulkChunkSize)
+                .flatMapSequential(chunk -> {
+
+                    List<Map.Entry<String, byte[]>> encoded = new ArrayList<>(chunk.size());
+                    chunk.forEach(entry -> {
+                        byte[] stored = codecRegistry.encode(set, entry.getData());
+                        hotKeyTracker.record(set, entry.getKey(), stored.length);
+                        encoded.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), stored));
+                    });
+
+                    Flux<KeyStatus> statuses = executeChunk(set, "putAll", backend.putAll(set, encoded, expiry), keysOf(chunk),
+                                                            created -> created ? BulkKeyStatus.CREATED : BulkKeyStatus.UPDATED);
+                    if (!mongoStore.isWriteBehind(set)) {
+                        return statuses;
+                    }
+                    // Only the entries which made it into the cache are queued for mongo
+                    return statuses.collectList()
+                            .flatMapMany(written -> Flux.range(0, written.size())
+                                    .filter(i -> written.get(i).getStatus() != BulkKeyStatus.FAILED)
+                                    .concatMap(i -> writeBehind(set, chunk.get(i).getKey(), chunk.get(i).getData()))
+                                    .thenMany(Flux.fromIterable(written)));
+                }, bulkConcurrency);
     }
 
     public Mono<Boolean> delete(
@@ -128,7 +633,9 @@ public class ReactiveRedisCache {
             String key
     ) {
 
-        return getMap(set).fastRemove(key)
+        return cacheMetrics.record(CacheMetrics.REACTIVE, set, "delete", backend.remove(set, List.of(key)))
+                .then(removeLists(set, List.of(key)))
+                .then(invalidate(set, List.of(key)))
                 .thenReturn(true);
     }
 
@@ -137,14 +644,112 @@ public class ReactiveRedisCache {
             Set<String> keys
     ) {
 
-        return getMap(set).fastRemove(String.valueOf(keys))
-                .thenReturn(true);
+        return Flux.fromIterable(keys)
+                .buffer(bulkChunkSize)
+                .flatMap(chunk -> cacheMetrics.record(CacheMetrics.REACTIVE, set, "deleteAll", backend.remove(set, chunk))
+                        .then(removeLists(set, chunk))
+                        .then(invalidate(set, chunk)), bulkConcurrency)
+                .then(Mono.just(true));
+    }
+
+    /**
+     * Bulk delete of many keys of a set, chunked and pipelined the same way as {@link #putAll(String, Flux)}.
+     * One status is emitted per key, telling whether the key existed. The native lists of list sets are removed
+     * too, but do not count towards the status.
+     */
+    public Flux<KeyStatus> deleteAll(String set, Flux<String> keys) {
+
+        return keys
+                .buffer(bulkChunkSize)
+                .flatMapSequential(chunk -> removeLists(set, chunk)
+                                           .thenMany(executeChunk(set, "deleteAll", backend.removeAll(set, chunk), chunk,
+                                                                  existed -> existed ? BulkKeyStatus.DELETED : BulkKeyStatus.NOT_FOUND)),
+                                   bulkConcurrency);
+    }
+
+    private Mono<Void> removeLists(String set, Collection<String> keys) {
+
+        return listProperties.isListSet(set) ? backend.removeLists(set, keys).then() : Mono.empty();
+    }
+
+    /**
+     * Runs a backend operation on a chunk of keys, which answers one flag per key in the order of the given keys, and
+     * maps every flag to the status of its key. The keys are dropped from the near cache whether or not the operation
+     * succeeded.
+     */
+    private Flux<KeyStatus> executeChunk(
+            String set,
+            String operation,
+            Mono<List<Boolean>> responses,
+            List<String> keys,
+            Function<Boolean, BulkKeyStatus> statusMapper
+    ) {
+
+        return cacheMetrics.record(CacheMetrics.REACTIVE, set, operation, responses)
+                .flatMap(result -> invalidate(set, keys).thenReturn(result))
+                .flatMapMany(result -> Flux.range(0, keys.size())
+                        .map(i -> new KeyStatus(keys.get(i), statusMapper.apply(result.get(i)))))
+                .onErrorResume(e -> {
+                    log.error("Bulk operation failed on set :: {} :: for {} keys", set, keys.size(), e);
+                    return invalidate(set, keys)
+                            .thenMany(Flux.fromIterable(keys))
+                            .map(key -> new KeyStatus(key, BulkKeyStatus.FAILED));
+                });
+    }
+
+    /**
+     * Drops written keys from the near cache and stops handing out reads of them that started before the write.
+     * Passing null keys invalidates the whole set.
+     */
+    private Mono<Void> invalidate(String set, Collection<String> keys) {
+
+        return Mono.defer(() -> {
+            Set<String> written = keys == null ? null : new HashSet<>(keys);
+            storedReads.forget(storedKey -> storedKey.getSet().equals(set)
+                    && (written == null || written.contains(storedKey.getKey())));
+            decodedReads.forget(decodedKey -> decodedKey.getSet().equals(set)
+                    && (written == null || written.contains(decodedKey.getKey())));
+            return nearCache.invalidate(set, keys);
+        });
+    }
+
+    private static <T> Flux<CacheEntry<T>> toEntries(Map<String, T> keyValueMap) {
+
+        return Flux.fromIterable(keyValueMap.entrySet())
+                .map(entry -> new CacheEntry<T>(entry.getKey(), entry.getValue()));
+    }
+
+    private static List<String> keysOf(List<? extends CacheEntry<?>> entries) {
+
+        return entries.stream()
+                .map(CacheEntry::getKey)
+                .collect(Collectors.toList());
     }
 
     public Mono<Boolean> deleteSet(String set) {
 
         log.info("Deleting set :: {}", set);
-        return getMap(set).delete();
+        return cacheMetrics.record(CacheMetrics.REACTIVE, set, "deleteSet", backend.deleteSet(set))
+                .flatMap(deleted -> invalidate(set, null).thenReturn(deleted));
+    }
+
+    @Getter
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class StoredKey {
+
+        private final String set;
+        private final String key;
+    }
+
+    @Getter
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class DecodedKey {
+
+        private final String set;
+        private final String key;
+        private final Type type;
     }
 
 }
@@ -2,6 +2,8 @@ package com.github.srilaxmi.cache.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.srilaxmi.cache.configuration.RedissonCustomClient;
+import com.github.srilaxmi.cache.metrics.CacheMetrics;
+import com.google.common.base.Utf8;
 import com.google.gson.Gson;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.*;
@@ -18,31 +20,28 @@ public class RedisCache {
     @Autowired
     private RedissonCustomClient redissonCustomClient;
 
-    private static final ObjectMapper mapper = new ObjectMapper();
+    @Autowired
+    private CacheMetrics cacheMetrics;
 
-    private static RedissonClient redissonClient;
+    private static final ObjectMapper mapper = new ObjectMapper();
 
     private RedissonClient getRedisClient() {
-
-        if (redissonClient != null) {
-            return redissonClient;
-        }
-
-        redissonClient = redissonCustomClient.getRedissonClient();
-
-        return redissonClient;
+        return redissonCustomClient.getRedissonClient();
     }
 
     public RLocalCachedMap<Object, Object> getLocalCachedMap(String name, LocalCachedMapOptions<Object, Object> options) {
-        return redissonCustomClient.getRedissonClient().getLocalCachedMap(name, options);
+        return getRedisClient().getLocalCachedMap(name, options);
     }
 
     public RMapCache<Object, Object> getRMapCache(String name, LocalCachedMapOptions<Object, Object> options) {
-        return redissonCustomClient.getRedissonClient().getMapCache(name);
+        return getRedisClient().getMapCache(name);
     }
 
     public Object get(String set, String key) {
 
+        CacheMetrics.OperationMetrics metrics = cacheMetrics.operation(CacheMetrics.REDIS, set, "get");
+        long start = System.nanoTime();
+
         RedissonClient redisClient = getRedisClient();
 
         RMapCache<String, Object> map = redisClient.getMapCache(set);
@@ -51,27 +50,46 @@ public class RedisCache {
             if (map.containsKey(key)) {
 
                 String value = (String) map.get(key);
-                return mapper.readValue(value, Object.class);
+                long decodeStart = System.nanoTime();
+                Object decoded = mapper.readValue(value, Object.class);
+                cacheMetrics.serialization(set, "decode").record(decodeStart, utf8Length(value));
+                metrics.hit(start);
+                return decoded;
 
             }
         } catch (IOException e) {
+            metrics.error(start);
             log.error("Exception occurred while getting data from redis : ", e);
             throw new CacheException(e.getMessage(), e);
+        } catch (RuntimeException e) {
+            metrics.error(start);
+            throw e;
         } finally {
             map.destroy();
         }
 
+        metrics.miss(start);
         return null;
 
     }
 
     public long getKeysCount(String set) {
 
+        CacheMetrics.OperationMetrics metrics = cacheMetrics.operation(CacheMetrics.REDIS, set, "count");
+        long start = System.nanoTime();
+
         RedissonClient redisClient = getRedisClient();
 
         RMapCache<String, Object> map = redisClient.getMapCache(set);
 
-        return map.keySet().size();
+        try {
+            long count = map.keySet().size();
+            metrics.success(start);
+            return count;
+        } catch (RuntimeException e) {
+            metrics.error(start);
+            throw e;
+        }
     }
 
     public void put(
@@ -80,13 +98,39 @@ public class RedisCache {
             Object value
     ) {
 
+        CacheMetrics.OperationMetrics metrics = cacheMetrics.operation(CacheMetrics.REDIS, set, "put");
+        long start = System.nanoTime();
+
         RedissonClient redisClient = getRedisClient();
         RMapCache<String, Object> map = redisClient.getMapCache(set);
-        Gson gson = new Gson();
-        map.fastPut(key, gson.toJson(value));
+        try {
+            Gson gson = new Gson();
+            long encodeStart = System.nanoTime();
+            String json = gson.toJson(value);
+            cacheMetrics.serialization(set, "encode").record(encodeStart, utf8Length(json));
+            map.fastPut(key, json);
+            metrics.success(start);
+        } catch (RuntimeException e) {
+            metrics.error(start);
+            throw e;
+        } finally {
+            map.destroy();
+        }
+
+    }
 
-        map.destroy();
+    /**
+     * Size of the string once written to redis, which stores it as UTF-8 (StringCodec), without encoding it. Guava
+     * rejects strings with a lone surrogate, which StringCodec still writes, so those fall back to the char count
+     * rather than failing the operation being measured.
+     */
+    private static int utf8Length(String value) {
 
+        try {
+            return Utf8.encodedLength(value);
+        } catch (IllegalArgumentException e) {
+            return value.length();
+        }
     }
 
-}
\ No newline at end of file
+}
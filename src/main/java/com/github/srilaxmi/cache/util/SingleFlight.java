@@ -0,0 +1,136 @@
+package com.github.srilaxmi.cache.util;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * De-duplicates concurrent loads of the same key.
+ *
+ * While a load for a key is in flight, every other caller asking for that key gets the same cached Mono instead of
+ * starting its own load. The key is forgotten as soon as the load terminates, so values are never served from here
+ * after the fact - this only collapses calls that overlap in time.
+ *
+ * A load runs detached from the caller that started it: it completes for everyone who joined it even if that caller
+ * cancels, and callers only fail when the load itself fails.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Joins the load in flight for the key, or starts one with the loader. onJoin is called when the caller joined
+     * an existing load.
+     */
+    public Mono<V> execute(K key, Supplier<Mono<V>> loader, Runnable onJoin) {
+
+        return Mono.defer(() -> {
+            Mono<V> existing = inFlight.get(key);
+            if (existing != null) {
+                onJoin.run();
+                return existing;
+            }
+
+            Sinks.One<V> sink = Sinks.one();
+            Mono<V> flight = sink.asMono();
+            existing = inFlight.putIfAbsent(key, flight);
+            if (existing != null) {
+                onJoin.run();
+                return existing;
+            }
+            load(Map.of(key, sink), Map.of(key, flight), keys -> loader.get().map(value -> Map.of(key, value)));
+            return flight;
+        });
+    }
+
+    /**
+     * Batch variant of {@link #execute(Object, Supplier, Runnable)}. Keys with a load in flight are joined, all the
+     * others are loaded together with a single call of the batch loader and can be joined by later callers in turn.
+     * onJoin receives the number of joined keys. Keys without a value are absent from the returned map.
+     */
+    public Mono<Map<K, V>> executeAll(
+            Collection<K> keys,
+            Function<Set<K>, Mono<Map<K, V>>> batchLoader,
+            IntConsumer onJoin
+    ) {
+
+        return Mono.defer(() -> {
+            Map<K, Mono<V>> joined = new HashMap<>();
+            Map<K, Sinks.One<V>> ownedSinks = new LinkedHashMap<>();
+            Map<K, Mono<V>> ownedFlights = new HashMap<>();
+            for (K key : keys) {
+                Sinks.One<V> sink = Sinks.one();
+                Mono<V> flight = sink.asMono();
+                Mono<V> existing = inFlight.putIfAbsent(key, flight);
+                if (existing != null) {
+                    joined.put(key, existing);
+                } else {
+                    ownedSinks.put(key, sink);
+                    ownedFlights.put(key, flight);
+                }
+            }
+            if (!joined.isEmpty()) {
+                onJoin.accept(joined.size());
+            }
+
+            if (!ownedSinks.isEmpty()) {
+                load(ownedSinks, ownedFlights, batchLoader);
+            }
+            Map<K, Mono<V>> flights = new HashMap<>(ownedFlights);
+            flights.putAll(joined);
+            return Flux.fromIterable(flights.entrySet())
+                    .flatMap(entry -> entry.getValue().map(value -> Map.entry(entry.getKey(), value)))
+                    .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+        });
+    }
+
+    /**
+     * Stops handing out the loads in flight for the matching keys, e.g. because the keys have just been written and
+     * a load started earlier may return the previous value. Callers that already joined are not affected.
+     */
+    public void forget(Predicate<K> filter) {
+
+        if (!inFlight.isEmpty()) {
+            inFlight.keySet().removeIf(filter);
+        }
+    }
+
+    /**
+     * Starts the loader for keys registered by this caller, in a subscription of its own, and publishes the outcome
+     * to the sinks of the keys, which this caller reads like everyone who joined them.
+     */
+    private void load(
+            Map<K, Sinks.One<V>> sinks,
+            Map<K, Mono<V>> flights,
+            Function<Set<K>, Mono<Map<K, V>>> loader
+    ) {
+
+        Mono.defer(() -> loader.apply(sinks.keySet()))
+                .defaultIfEmpty(Map.of())
+                .doOnNext(values -> sinks.forEach((key, sink) -> {
+                    V value = values.get(key);
+                    if (value == null) {
+                        sink.tryEmitEmpty();
+                    } else {
+                        sink.tryEmitValue(value);
+                    }
+                }))
+                .doOnError(e -> sinks.values().forEach(sink -> sink.tryEmitError(e)))
+                .doFinally(signal -> flights.forEach(inFlight::remove))
+                // The outcome reaches the callers through the sinks
+                .subscribe(values -> {
+                }, e -> {
+                });
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.srilaxmi.cache.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapSegmentTest {
+
+    // Keys of 2 bytes and values of 22 bytes make records of 40 bytes, two and a half of which fit in the segment
+    private static final int CAPACITY = 100;
+
+    private static final long NOW = 1_000L;
+
+    @Test
+    void readsBackWhatWasWritten() {
+
+        OffHeapSegment segment = new OffHeapSegment(CAPACITY);
+
+        assertTrue(put(segment, "k0", value('a'), 0));
+        assertArrayEquals(value('a'), get(segment, "k0"));
+        assertNull(get(segment, "k1"));
+    }
+
+    @Test
+    void overwriteKeepsOneEntryWithTheLatestValue() {
+
+        OffHeapSegment segment = new OffHeapSegment(CAPACITY);
+
+        assertTrue(put(segment, "k0", value('a'), 0));
+        assertFalse(put(segment, "k0", value('b'), 0));
+
+        assertEquals(1, segment.size());
+        assertArrayEquals(value('b'), get(segment, "k0"));
+    }
+
+    @Test
+    void wrapsAroundAndEvictsOldestFirst() {
+
+        OffHeapSegment segment = new OffHeapSegment(CAPACITY);
+
+        put(segment, "k0", value('a'), 0);
+        put(segment, "k1", value('b'), 0);
+        // Does not fit behind k1, wraps to the start of the ring over k0
+        put(segment, "k2", value('c'), 0);
+
+        assertNull(get(segment, "k0"));
+        assertArrayEquals(value('b'), get(segment, "k1"));
+        assertArrayEquals(value('c'), get(segment, "k2"));
+
+        // Takes the place of k1, behind k2
+        put(segment, "k3", value('d'), 0);
+
+        assertNull(get(segment, "k1"));
+        assertArrayEquals(value('c'), get(segment, "k2"));
+        assertArrayEquals(value('d'), get(segment, "k3"));
+        assertEquals(2, segment.size());
+    }
+
+    @Test
+    void evictsAsManyRecordsAsTheNewOneNeeds() {
+
+        OffHeapSegment segment = new OffHeapSegment(CAPACITY);
+
+        put(segment, "k0", value('a'), 0);
+        put(segment, "k1", value('b'), 0);
+        put(segment, "k2", new byte[CAPACITY - OffHeapSegment.HEADER_BYTES - 2], 0);
+
+        assertNull(get(segment, "k0"));
+        assertNull(get(segment, "k1"));
+        assertEquals(1, segment.size());
+    }
+
+    @Test
+    void rejectsEntriesLargerThanTheSegment() {
+
+        OffHeapSegment segment = new OffHeapSegment(CAPACITY);
+        put(segment, "k0", value('a'), 0);
+
+        byte[] large = new byte[CAPACITY - OffHeapSegment.HEADER_BYTES - 1];
+        assertThrows(EntryTooLargeException.class, () -> put(segment, "k1", large, 0));
+
+        assertArrayEquals(value('a'), get(segment, "k0"));
+        assertEquals(1, segment.size());
+    }
+
+    @Test
+    void expiredEntriesAreNotReturned() {
+
+        OffHeapSegment segment = new OffHeapSegment(CAPACITY);
+
+        put(segment, "k0", value('a'), NOW + 10);
+
+        assertArrayEquals(value('a'), segment.get(key("k0"), hash("k0"), NOW + 9));
+        assertNull(segment.get(key("k0"), hash("k0"), NOW + 10));
+        assertEquals(0, segment.size());
+    }
+
+    private static boolean put(OffHeapSegment segment, String key, byte[] value, long expiresAt) {
+        return segment.put(key(key), hash(key), value, expiresAt, NOW);
+    }
+
+    private static byte[] get(OffHeapSegment segment, String key) {
+        return segment.get(key(key), hash(key), NOW);
+    }
+
+    private static byte[] key(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int hash(String key) {
+        return OffHeapStore.hash(key(key));
+    }
+
+    private static byte[] value(char fill) {
+
+        byte[] value = new byte[22];
+        Arrays.fill(value, (byte) fill);
+        return value;
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.srilaxmi.cache.backend;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapStoreTest {
+
+    @Test
+    void smallStoresGetFewerSegmentsInsteadOfMoreMemory() {
+
+        OffHeapStore store = new OffHeapStore(10_000, 16);
+
+        assertEquals(2, store.getSegmentCount());
+        assertTrue(store.getCapacity() <= 10_000);
+    }
+
+    @Test
+    void storeSmallerThanOneSegmentKeepsItsBudget() {
+
+        OffHeapStore store = new OffHeapStore(1_000, 16);
+
+        assertEquals(1, store.getSegmentCount());
+        assertEquals(1_000, store.getCapacity());
+    }
+
+    @Test
+    void largeStoresKeepTheAskedSegmentCount() {
+
+        OffHeapStore store = new OffHeapStore(16L * 1024 * 1024, 16);
+
+        assertEquals(16, store.getSegmentCount());
+        assertEquals(16L * 1024 * 1024, store.getCapacity());
+        store.put("key", new byte[]{1, 2, 3}, 0, 0);
+        assertArrayEquals(new byte[]{1, 2, 3}, store.get("key", 0));
+    }
+}